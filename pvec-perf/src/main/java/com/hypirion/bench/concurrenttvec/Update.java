@@ -0,0 +1,51 @@
+package com.hypirion.bench.concurrenttvec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import com.hypirion.pvec.ConcurrentTVec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Threads;
+
+// 16 threads setting random indices in the same vector.
+@State(Scope.Benchmark)
+@Threads(16)
+public class Update {
+
+    @Param({"1", "2", "3", "4"})
+    public int bits;
+    int size;
+
+    ConcurrentTVec c;
+    List<Object> list;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        size = (1 << (5*bits)) + 32;
+        c = new ConcurrentTVec();
+        list = Collections.synchronizedList(new ArrayList<Object>());
+        for (int i = 0; i < size; i++) {
+            c.push(null);
+            list.add(null);
+        }
+        // start from a snapshot, so the first writes have to copy their paths
+        c.snapshot();
+    }
+
+    @Benchmark
+    public ConcurrentTVec benchSet() {
+        return c.set(ThreadLocalRandom.current().nextInt(size), null);
+    }
+
+    @Benchmark
+    public Object benchSynchronizedList() {
+        return list.set(ThreadLocalRandom.current().nextInt(size), null);
+    }
+}
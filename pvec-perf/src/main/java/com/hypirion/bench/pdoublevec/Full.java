@@ -0,0 +1,59 @@
+package com.hypirion.bench.pdoublevec;
+
+import com.hypirion.pvec.PDoubleVec;
+import com.hypirion.pvec.TDoubleVec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Level;
+
+@State(Scope.Benchmark)
+public class Full {
+
+    // consider single-shot due to slowness
+    @Param({"0", "1", "2", "3", "4", "5"})
+    public int bits;
+    int size;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        size = (1 << (5*bits)) + 32;
+    }
+
+    @Benchmark
+    public double benchFull() {
+        double val = 4;
+        PDoubleVec p = new PDoubleVec();
+        for (int i = 0; i < size; i++) {
+            p = p.push(val);
+        }
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += p.get(i);
+        }
+        for (int i = 0; i < size; i++) {
+            p = p.pop();
+        }
+        return sum + p.size();
+    }
+
+    @Benchmark
+    public double benchFullTransient() {
+        double val = 4;
+        TDoubleVec t = new TDoubleVec();
+        for (int i = 0; i < size; i++) {
+            t.push(val);
+        }
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += t.get(i);
+        }
+        for (int i = 0; i < size; i++) {
+            t.pop();
+        }
+        return sum + t.size();
+    }
+}
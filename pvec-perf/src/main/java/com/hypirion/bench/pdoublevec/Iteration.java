@@ -0,0 +1,39 @@
+package com.hypirion.bench.pdoublevec;
+
+import com.hypirion.pvec.PDoubleVec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Level;
+
+@State(Scope.Benchmark)
+public class Iteration {
+
+    @Param({"0", "1", "2", "3", "4", "5"})
+    public int bits;
+    int size;
+
+    PDoubleVec p;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        size = (1 << (5*bits)) + 32;
+        double[] elems = new double[size];
+        for (int i = 0; i < size; i++) {
+            elems[i] = 4;
+        }
+        p = PDoubleVec.fromArray(elems);
+    }
+
+    @Benchmark
+    public double benchSeqGet() {
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += p.get(i);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,59 @@
+package com.hypirion.bench.pintvec;
+
+import com.hypirion.pvec.PIntVec;
+import com.hypirion.pvec.TIntVec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Level;
+
+@State(Scope.Benchmark)
+public class Full {
+
+    // consider single-shot due to slowness
+    @Param({"0", "1", "2", "3", "4", "5"})
+    public int bits;
+    int size;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        size = (1 << (5*bits)) + 32;
+    }
+
+    @Benchmark
+    public long benchFull() {
+        int val = 4;
+        PIntVec p = new PIntVec();
+        for (int i = 0; i < size; i++) {
+            p = p.push(val);
+        }
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += p.get(i);
+        }
+        for (int i = 0; i < size; i++) {
+            p = p.pop();
+        }
+        return sum + p.size();
+    }
+
+    @Benchmark
+    public long benchFullTransient() {
+        int val = 4;
+        TIntVec t = new TIntVec();
+        for (int i = 0; i < size; i++) {
+            t.push(val);
+        }
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += t.get(i);
+        }
+        for (int i = 0; i < size; i++) {
+            t.pop();
+        }
+        return sum + t.size();
+    }
+}
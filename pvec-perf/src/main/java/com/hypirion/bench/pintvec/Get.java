@@ -0,0 +1,43 @@
+package com.hypirion.bench.pintvec;
+
+import java.util.Random;
+import com.hypirion.pvec.PIntVec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Level;
+
+@State(Scope.Benchmark)
+public class Get {
+
+    @Param({"1", "2", "3", "4", "5"})
+    public int bits;
+    int size;
+
+    PIntVec p;
+    Random r;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        r = new Random(1);
+        size = (1 << (5*bits)) + 32;
+        int[] elems = new int[size];
+        for (int i = 0; i < size; i++) {
+            elems[i] = i;
+        }
+        p = PIntVec.fromArray(elems);
+    }
+
+    @Benchmark
+    public int benchGet() {
+        return p.get(r.nextInt(size - 32)) + 1;
+    }
+
+    @Benchmark
+    public PIntVec benchSet() {
+        return p.set(r.nextInt(size), 1);
+    }
+}
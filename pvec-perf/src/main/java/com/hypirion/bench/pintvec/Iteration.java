@@ -0,0 +1,39 @@
+package com.hypirion.bench.pintvec;
+
+import com.hypirion.pvec.PIntVec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Level;
+
+@State(Scope.Benchmark)
+public class Iteration {
+
+    @Param({"0", "1", "2", "3", "4", "5"})
+    public int bits;
+    int size;
+
+    PIntVec p;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        size = (1 << (5*bits)) + 32;
+        int[] elems = new int[size];
+        for (int i = 0; i < size; i++) {
+            elems[i] = 4;
+        }
+        p = PIntVec.fromArray(elems);
+    }
+
+    @Benchmark
+    public long benchSeqGet() {
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += p.get(i);
+        }
+        return sum;
+    }
+}
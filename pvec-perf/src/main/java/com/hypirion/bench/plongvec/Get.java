@@ -0,0 +1,43 @@
+package com.hypirion.bench.plongvec;
+
+import java.util.Random;
+import com.hypirion.pvec.PLongVec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Level;
+
+@State(Scope.Benchmark)
+public class Get {
+
+    @Param({"1", "2", "3", "4", "5"})
+    public int bits;
+    int size;
+
+    PLongVec p;
+    Random r;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        r = new Random(1);
+        size = (1 << (5*bits)) + 32;
+        long[] elems = new long[size];
+        for (int i = 0; i < size; i++) {
+            elems[i] = i;
+        }
+        p = PLongVec.fromArray(elems);
+    }
+
+    @Benchmark
+    public long benchGet() {
+        return p.get(r.nextInt(size - 32)) + 1;
+    }
+
+    @Benchmark
+    public PLongVec benchSet() {
+        return p.set(r.nextInt(size), 1);
+    }
+}
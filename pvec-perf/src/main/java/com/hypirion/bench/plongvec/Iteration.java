@@ -0,0 +1,39 @@
+package com.hypirion.bench.plongvec;
+
+import com.hypirion.pvec.PLongVec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Level;
+
+@State(Scope.Benchmark)
+public class Iteration {
+
+    @Param({"0", "1", "2", "3", "4", "5"})
+    public int bits;
+    int size;
+
+    PLongVec p;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        size = (1 << (5*bits)) + 32;
+        long[] elems = new long[size];
+        for (int i = 0; i < size; i++) {
+            elems[i] = 4;
+        }
+        p = PLongVec.fromArray(elems);
+    }
+
+    @Benchmark
+    public long benchSeqGet() {
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += p.get(i);
+        }
+        return sum;
+    }
+}
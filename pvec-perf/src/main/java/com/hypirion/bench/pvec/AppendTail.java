@@ -2,6 +2,7 @@ package com.hypirion.bench.pvec;
 
 import java.util.Random;
 import com.hypirion.pvec.PVec;
+import com.hypirion.pvec.PVecFixedTail;
 
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Param;
@@ -18,18 +19,28 @@ public class AppendTail {
     int size;
 
     PVec p;
+    PVecFixedTail f;
 
     @Setup(Level.Trial)
     public void setup() {
         size = 32 + offset;
-        p = new PVec();
+        Object[] elems = new Object[size];
         for (int i = 0; i < size; i++) {
-            p = p.push(new Object());
+            elems[i] = new Object();
         }
+        p = PVec.fromArray(elems);
+        f = PVecFixedTail.fromArray(elems);
     }
 
     @Benchmark
     public PVec benchAppendTail() {
         return p.push(null);
     }
+
+    // f is no longer the newest version after the first call, so this
+    // measures the copying fallback.
+    @Benchmark
+    public PVecFixedTail benchAppendTailFixed() {
+        return f.push(null);
+    }
 }
@@ -2,6 +2,7 @@ package com.hypirion.bench.pvec;
 
 import java.util.Random;
 import com.hypirion.pvec.PVec;
+import com.hypirion.pvec.PVecFixedTail;
 
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Param;
@@ -17,9 +18,12 @@ public class Appends {
     public int bits;
     int size;
 
+    Object[] elems;
+
     @Setup(Level.Trial)
     public void setup() {
         size = (1 << (5*bits)) + 32;
+        elems = new Object[size];
     }
 
     @Benchmark
@@ -30,4 +34,24 @@ public class Appends {
         }
         return p;
     }
+
+    // Always appends to the newest version, so the tail is never copied.
+    @Benchmark
+    public PVecFixedTail benchAppendsFixedTail() {
+        PVecFixedTail p = new PVecFixedTail();
+        for (int i = 0; i < size; i++) {
+            p = p.push(null);
+        }
+        return p;
+    }
+
+    @Benchmark
+    public PVec benchFromArray() {
+        return PVec.fromArray(elems);
+    }
+
+    @Benchmark
+    public PVec benchPushAll() {
+        return new PVec().pushAll(elems, 0, size);
+    }
 }
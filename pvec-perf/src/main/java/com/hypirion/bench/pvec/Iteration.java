@@ -2,6 +2,8 @@ package com.hypirion.bench.pvec;
 
 import java.util.Iterator;
 import com.hypirion.pvec.PVec;
+import com.hypirion.pvec.PVecCursor;
+import com.hypirion.pvec.Reducer;
 
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Param;
@@ -19,14 +21,21 @@ public class Iteration {
 
     PVec p;
 
+    static final Reducer sum = new Reducer() {
+            public Object reduce(Object acc, Object x) {
+                return ((Number) acc).longValue() + ((Number) x).longValue();
+            }
+        };
+
     @Setup(Level.Trial)
     public void setup() {
         size = (1 << (5*bits)) + 32;
         Integer ig = 4;
-        p = new PVec();
+        Object[] elems = new Object[size];
         for (int i = 0; i < size; i++) {
-            p = p.push(ig);
+            elems[i] = ig;
         }
+        p = PVec.fromArray(elems);
     }
 
     @Benchmark
@@ -46,4 +55,34 @@ public class Iteration {
         }
         return sum;
     }
+
+    @Benchmark
+    public long benchCursorSeqGet() {
+        PVecCursor c = p.cursor();
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += (Integer) c.get(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long benchStream() {
+        return p.stream().mapToLong(o -> (Integer) o).sum();
+    }
+
+    @Benchmark
+    public long benchParallelStream() {
+        return p.parallelStream().mapToLong(o -> (Integer) o).sum();
+    }
+
+    @Benchmark
+    public long benchReduce() {
+        return (Long) p.reduce(0L, sum);
+    }
+
+    @Benchmark
+    public long benchParallelReduce() {
+        return (Long) p.parallelReduce(0L, sum);
+    }
 }
@@ -0,0 +1,47 @@
+package com.hypirion.bench.pvec;
+
+import com.hypirion.pvec.Fun;
+import com.hypirion.pvec.PVec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Level;
+
+@State(Scope.Benchmark)
+public class Map {
+
+    @Param({"2", "3", "4", "5"})
+    public int bits;
+    int size;
+
+    PVec p;
+
+    static final Fun inc = new Fun() {
+            public Object update(Object x) {
+                return ((Integer) x) + 1;
+            }
+        };
+
+    @Setup(Level.Trial)
+    public void setup() {
+        size = (1 << (5*bits)) + 32;
+        Object[] elems = new Object[size];
+        for (int i = 0; i < size; i++) {
+            elems[i] = i;
+        }
+        p = PVec.fromArray(elems);
+    }
+
+    @Benchmark
+    public PVec benchMap() {
+        return p.map(inc);
+    }
+
+    @Benchmark
+    public PVec benchParallelMap() {
+        return p.parallelMap(inc);
+    }
+}
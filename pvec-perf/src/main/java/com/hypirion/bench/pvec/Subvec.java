@@ -0,0 +1,53 @@
+package com.hypirion.bench.pvec;
+
+import java.util.Random;
+import com.hypirion.pvec.PVec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Level;
+
+@State(Scope.Benchmark)
+public class Subvec {
+
+    @Param({"1", "2", "3", "4", "5"})
+    public int bits;
+    int size;
+
+    Random r;
+    Object[] elems;
+    PVec p;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        r = new Random(1);
+        size = (1 << (5*bits)) + 32;
+        elems = new Object[size];
+        for (int i = 0; i < size; i++) {
+            elems[i] = new Object();
+        }
+        p = PVec.fromArray(elems);
+    }
+
+    @Benchmark
+    public PVec benchSubvec() {
+        int from = r.nextInt(size);
+        return p.subvec(from, from + r.nextInt(size - from + 1));
+    }
+
+    @Benchmark
+    public PVec benchSubvecCopy() {
+        int from = r.nextInt(size);
+        return PVec.fromArray(elems, from, from + r.nextInt(size - from + 1));
+    }
+
+    @Benchmark
+    public Object benchSubvecGet() {
+        int from = r.nextInt(size);
+        PVec s = p.subvec(from, size);
+        return s.get(r.nextInt(size - from));
+    }
+}
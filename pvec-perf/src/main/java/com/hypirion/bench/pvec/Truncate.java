@@ -0,0 +1,38 @@
+package com.hypirion.bench.pvec;
+
+import java.util.Random;
+import com.hypirion.pvec.PVec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Level;
+
+@State(Scope.Benchmark)
+public class Truncate {
+
+    @Param({"1", "2", "3", "4", "5"})
+    public int bits;
+    int size;
+
+    Random r;
+    PVec p;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        r = new Random(1);
+        size = (1 << (5*bits)) + 32;
+        Object[] elems = new Object[size];
+        for (int i = 0; i < size; i++) {
+            elems[i] = new Object();
+        }
+        p = PVec.fromArray(elems);
+    }
+
+    @Benchmark
+    public PVec benchTruncate() {
+        return p.truncate(r.nextInt(size));
+    }
+}
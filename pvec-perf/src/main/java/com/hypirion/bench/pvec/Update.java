@@ -1,7 +1,9 @@
 package com.hypirion.bench.pvec;
 
 import java.util.Random;
+import com.hypirion.pvec.Fun;
 import com.hypirion.pvec.PVec;
+import com.hypirion.pvec.PVecCursor;
 
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Param;
@@ -20,18 +22,59 @@ public class Update {
     Random r;
     PVec p;
 
+    static final Fun replace = new Fun() {
+            public Object update(Object x) {
+                return new Object();
+            }
+        };
+
     @Setup(Level.Trial)
     public void setup() {
         r = new Random(1);
         size = (1 << (5*bits)) + 32;
-        p = new PVec();
+        Object[] elems = new Object[size];
         for (int i = 0; i < size; i++) {
-            p = p.push(new Object());
+            elems[i] = new Object();
         }
+        p = PVec.fromArray(elems);
     }
 
     @Benchmark
     public PVec benchUpdate() {
         return p.set(r.nextInt(size - 32), new Object());
     }
+
+    @Benchmark
+    public PVec benchGetSet() {
+        int i = r.nextInt(size - 32);
+        return p.set(i, replace.update(p.get(i)));
+    }
+
+    @Benchmark
+    public PVec benchUpdateFun() {
+        return p.update(r.nextInt(size - 32), replace);
+    }
+
+    // 32 sets at random indices within a window of (at most) 256 elements
+    @Benchmark
+    public PVec benchLocalSets() {
+        int window = Math.min(256, size);
+        int start = r.nextInt(size - window + 1);
+        PVec q = p;
+        for (int i = 0; i < 32; i++) {
+            q = q.set(start + r.nextInt(window), new Object());
+        }
+        return q;
+    }
+
+    @Benchmark
+    public PVec benchCursorLocalSets() {
+        int window = Math.min(256, size);
+        int start = r.nextInt(size - window + 1);
+        PVecCursor c = p.cursor();
+        for (int i = 0; i < 32; i++) {
+            c.set(start + r.nextInt(window), new Object());
+        }
+        return c.vec();
+    }
 }
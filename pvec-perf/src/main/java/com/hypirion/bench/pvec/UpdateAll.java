@@ -0,0 +1,57 @@
+package com.hypirion.bench.pvec;
+
+import java.util.Random;
+import com.hypirion.pvec.PVec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Level;
+
+@State(Scope.Benchmark)
+public class UpdateAll {
+
+    @Param({"2", "3", "4", "5"})
+    public int bits;
+    int size;
+
+    @Param({"500", "5000"})
+    public int updates;
+
+    PVec p;
+    int[] indices;
+    Object[] values;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random r = new Random(1);
+        size = (1 << (5*bits)) + 32;
+        Object[] elems = new Object[size];
+        for (int i = 0; i < size; i++) {
+            elems[i] = new Object();
+        }
+        p = PVec.fromArray(elems);
+        indices = new int[updates];
+        values = new Object[updates];
+        for (int i = 0; i < updates; i++) {
+            indices[i] = r.nextInt(size);
+            values[i] = new Object();
+        }
+    }
+
+    @Benchmark
+    public PVec benchSetLoop() {
+        PVec updated = p;
+        for (int i = 0; i < updates; i++) {
+            updated = updated.set(indices[i], values[i]);
+        }
+        return updated;
+    }
+
+    @Benchmark
+    public PVec benchSetAll() {
+        return p.setAll(indices, values);
+    }
+}
@@ -0,0 +1,59 @@
+package com.hypirion.bench.pvec;
+
+import java.util.Random;
+import com.hypirion.pvec.PVec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Level;
+
+@State(Scope.Benchmark)
+public class UpdateRange {
+
+    @Param({"2", "3", "4", "5"})
+    public int bits;
+    int size;
+
+    @Param({"32", "1024", "4096"})
+    public int range;
+    // range can be larger than the smallest vectors, so use at most size.
+    int len;
+
+    Random r;
+    PVec p;
+    Object[] values;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        r = new Random(1);
+        size = (1 << (5*bits)) + 32;
+        Object[] elems = new Object[size];
+        for (int i = 0; i < size; i++) {
+            elems[i] = new Object();
+        }
+        p = PVec.fromArray(elems);
+        len = Math.min(range, size);
+        values = new Object[len];
+        for (int i = 0; i < len; i++) {
+            values[i] = new Object();
+        }
+    }
+
+    @Benchmark
+    public PVec benchSetLoop() {
+        int from = r.nextInt(size - len + 1);
+        PVec updated = p;
+        for (int i = 0; i < len; i++) {
+            updated = updated.set(from + i, values[i]);
+        }
+        return updated;
+    }
+
+    @Benchmark
+    public PVec benchSetRange() {
+        return p.setRange(r.nextInt(size - len + 1), values);
+    }
+}
@@ -0,0 +1,72 @@
+package com.hypirion.bench.pvecbuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import com.hypirion.pvec.PVec;
+import com.hypirion.pvec.PVecBuilder;
+import com.hypirion.pvec.TVec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Level;
+
+// Builds a vector of size elements with the given number of threads, each
+// adding its share one element at a time.
+@State(Scope.Benchmark)
+public class Build {
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"1000000"})
+    public int size;
+
+    ExecutorService pool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        pool = Executors.newFixedThreadPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public PVec benchBuilder() throws Exception {
+        final PVecBuilder b = new PVecBuilder();
+        List<Future<?>> done = new ArrayList<Future<?>>();
+        for (int t = 0; t < threads; t++) {
+            final PVecBuilder.Part part = b.part();
+            final int n = size / threads + (t < size % threads ? 1 : 0);
+            done.add(pool.submit(new Runnable() {
+                    public void run() {
+                        for (int i = 0; i < n; i++) {
+                            part.add(null);
+                        }
+                    }
+                }));
+        }
+        for (Future<?> f : done) {
+            f.get();
+        }
+        return b.build();
+    }
+
+    @Benchmark
+    public PVec benchTVec() {
+        TVec t = new TVec();
+        for (int i = 0; i < size; i++) {
+            t.push(null);
+        }
+        return t.asPersistent();
+    }
+}
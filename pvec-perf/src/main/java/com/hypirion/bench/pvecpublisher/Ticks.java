@@ -0,0 +1,40 @@
+package com.hypirion.bench.pvecpublisher;
+
+import com.hypirion.pvec.PVec;
+import com.hypirion.pvec.PVecPublisher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Level;
+
+// A single writer appending ticks, either straight onto a PVec or through a
+// publisher which publishes a snapshot every maxOps ticks.
+@State(Scope.Benchmark)
+public class Ticks {
+
+    @Param({"1", "16", "256"})
+    public int maxOps;
+
+    PVec p;
+    PVecPublisher pub;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        p = new PVec();
+        pub = new PVecPublisher(new PVec(), maxOps, Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public PVec benchPush() {
+        p = p.push(null);
+        return p;
+    }
+
+    @Benchmark
+    public PVecPublisher benchPublisherPush() {
+        return pub.push(null);
+    }
+}
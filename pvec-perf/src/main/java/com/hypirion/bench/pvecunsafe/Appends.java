@@ -17,9 +17,12 @@ public class Appends {
     public int bits;
     int size;
 
+    Object[] elems;
+
     @Setup(Level.Trial)
     public void setup() {
         size = (1 << (5*bits)) + 32;
+        elems = new Object[size];
     }
 
     @Benchmark
@@ -30,4 +33,9 @@ public class Appends {
         }
         return p;
     }
+
+    @Benchmark
+    public PVecUnsafe benchFromArray() {
+        return PVecUnsafe.fromArray(elems);
+    }
 }
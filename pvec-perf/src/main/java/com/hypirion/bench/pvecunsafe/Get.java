@@ -25,10 +25,11 @@ public class Get {
     public void setup() {
         r = new Random(1);
         size = (1 << (5*bits)) + 32;
-        p = new PVecUnsafe();
+        Object[] elems = new Object[size];
         for (int i = 0; i < size; i++) {
-            p = p.push(i);
+            elems[i] = i;
         }
+        p = PVecUnsafe.fromArray(elems);
     }
 
     @Benchmark
@@ -22,10 +22,11 @@ public class Pop {
     @Setup(Level.Trial)
     public void setup() {
         size = (1 << (5*bits)) + 65;
-        p = new PVecUnsafe();
+        Object[] elems = new Object[size];
         for (int i = 0; i < size; i++) {
-            p = p.push(new Object());
+            elems[i] = new Object();
         }
+        p = PVecUnsafe.fromArray(elems);
     }
 
     @Benchmark
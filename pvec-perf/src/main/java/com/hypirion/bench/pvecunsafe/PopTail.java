@@ -22,10 +22,11 @@ public class PopTail {
     @Setup(Level.Trial)
     public void setup() {
         size = 32 + offset;
-        p = new PVecUnsafe();
+        Object[] elems = new Object[size];
         for (int i = 0; i < size; i++) {
-            p = p.push(new Object());
+            elems[i] = new Object();
         }
+        p = PVecUnsafe.fromArray(elems);
     }
 
     @Benchmark
@@ -23,10 +23,11 @@ public class Pops {
     @Setup(Level.Trial)
     public void setup() {
         size = (1 << (5*bits)) + 32;
-        p = new PVecUnsafe();
+        Object[] elems = new Object[size];
         for (int i = 0; i < size; i++) {
-            p = p.push(new Object());
+            elems[i] = new Object();
         }
+        p = PVecUnsafe.fromArray(elems);
     }
 
     @Benchmark
@@ -0,0 +1,48 @@
+package com.hypirion.bench.rrbvec;
+
+import com.hypirion.pvec.PVec;
+import com.hypirion.pvec.RRBVec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Level;
+
+@State(Scope.Benchmark)
+public class Concat {
+
+    @Param({"1", "2", "3", "4"})
+    public int bits;
+    int size;
+
+    RRBVec left;
+    RRBVec right;
+    PVec pleft;
+    PVec pright;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // uneven sizes, so that the vectors don't line up on leaf boundaries
+        size = (1 << (5*bits)) + 17;
+        Object[] elems = new Object[size];
+        for (int i = 0; i < size; i++) {
+            elems[i] = new Object();
+        }
+        left = RRBVec.fromArray(elems);
+        right = RRBVec.fromArray(elems).drop(5);
+        pleft = PVec.fromArray(elems);
+        pright = PVec.fromArray(elems, 5, size);
+    }
+
+    @Benchmark
+    public RRBVec benchConcat() {
+        return left.concat(right);
+    }
+
+    @Benchmark
+    public PVec benchPushAll() {
+        return pleft.pushAll(pright);
+    }
+}
@@ -0,0 +1,50 @@
+package com.hypirion.bench.rrbvec;
+
+import java.util.Random;
+import com.hypirion.pvec.RRBVec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Level;
+
+@State(Scope.Benchmark)
+public class Get {
+
+    @Param({"1", "2", "3", "4", "5"})
+    public int bits;
+    int size;
+
+    RRBVec balanced;
+    RRBVec relaxed;
+    Random r;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        r = new Random(1);
+        size = (1 << (5*bits)) + 32;
+        Object[] elems = new Object[size];
+        for (int i = 0; i < size; i++) {
+            elems[i] = i;
+        }
+        balanced = RRBVec.fromArray(elems);
+        // concatenating uneven pieces gives a trie with size tables
+        relaxed = new RRBVec();
+        for (int i = 0; i < size; i += 1000) {
+            RRBVec piece = balanced.take(Math.min(size, i + 1000)).drop(i);
+            relaxed = relaxed.concat(piece);
+        }
+    }
+
+    @Benchmark
+    public int benchGetBalanced() {
+        return ((Integer) balanced.get(r.nextInt(size))) + 1;
+    }
+
+    @Benchmark
+    public int benchGetRelaxed() {
+        return ((Integer) relaxed.get(r.nextInt(size))) + 1;
+    }
+}
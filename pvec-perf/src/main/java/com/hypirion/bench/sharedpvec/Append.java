@@ -0,0 +1,43 @@
+package com.hypirion.bench.sharedpvec;
+
+import java.util.concurrent.atomic.AtomicReference;
+import com.hypirion.pvec.PVec;
+import com.hypirion.pvec.SharedPVec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Threads;
+
+// 16 threads appending to the same vector.
+@State(Scope.Benchmark)
+@Threads(16)
+public class Append {
+
+    SharedPVec shared;
+    AtomicReference<PVec> ref;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        shared = new SharedPVec();
+        ref = new AtomicReference<PVec>(new PVec());
+    }
+
+    @Benchmark
+    public void benchShared() {
+        shared.append(null);
+    }
+
+    @Benchmark
+    public PVec benchCasLoop() {
+        while (true) {
+            PVec p = ref.get();
+            PVec next = p.push(null);
+            if (ref.compareAndSet(p, next)) {
+                return next;
+            }
+        }
+    }
+}
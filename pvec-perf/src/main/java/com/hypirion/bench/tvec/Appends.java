@@ -17,9 +17,12 @@ public class Appends {
     public int bits;
     int size;
 
+    Object[] elems;
+
     @Setup(Level.Trial)
     public void setup() {
         size = (1 << (5*bits)) + 32;
+        elems = new Object[size];
     }
 
     @Benchmark
@@ -30,4 +33,18 @@ public class Appends {
         }
         return t;
     }
+
+    @Benchmark
+    public TVec benchAppendsConfined() {
+        TVec t = TVec.confined();
+        for (int i = 0; i < size; i++) {
+            t = t.push(null);
+        }
+        return t;
+    }
+
+    @Benchmark
+    public TVec benchPushAll() {
+        return new TVec().pushAll(elems, 0, size);
+    }
 }
@@ -0,0 +1,49 @@
+package com.hypirion.bench.tvec;
+
+import com.hypirion.pvec.PVec;
+import com.hypirion.pvec.TVec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Level;
+
+@State(Scope.Benchmark)
+public class Persist {
+
+    @Param({"1", "8", "31", "32"})
+    public int batch;
+
+    PVec vec;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        TVec t = new TVec();
+        for (int i = 0; i < 1000; i++) {
+            t.push(null);
+        }
+        vec = t.asPersistent();
+    }
+
+    // Converts to transient, pushes a small batch and converts back, as done
+    // when small batches are applied to a vector one after another.
+    @Benchmark
+    public PVec benchRoundTrip() {
+        TVec t = vec.asTransient();
+        for (int i = 0; i < batch; i++) {
+            t.push(null);
+        }
+        return t.asPersistent();
+    }
+
+    @Benchmark
+    public PVec benchAsPersistent() {
+        TVec t = new TVec();
+        for (int i = 0; i < batch; i++) {
+            t.push(null);
+        }
+        return t.asPersistent();
+    }
+}
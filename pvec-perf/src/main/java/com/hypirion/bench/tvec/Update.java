@@ -19,6 +19,7 @@ public class Update {
 
     Random r;
     TVec t;
+    TVec tc;
 
     @Setup(Level.Trial)
     public void setup() {
@@ -28,6 +29,10 @@ public class Update {
         for (int i = 0; i < size; i++) {
             t = t.push(new Object());
         }
+        tc = TVec.confined();
+        for (int i = 0; i < size; i++) {
+            tc = tc.push(new Object());
+        }
     }
 
     @Benchmark
@@ -35,4 +40,21 @@ public class Update {
         t = t.set(r.nextInt(size - 32), new Object());
         return t;
     }
+
+    @Benchmark
+    public TVec benchUpdateConfined() {
+        tc = tc.set(r.nextInt(size - 32), new Object());
+        return tc;
+    }
+
+    // 32 sets at random indices within a window of (at most) 256 elements
+    @Benchmark
+    public TVec benchLocalSets() {
+        int window = Math.min(256, size);
+        int start = r.nextInt(size - window + 1);
+        for (int i = 0; i < 32; i++) {
+            t = t.set(start + r.nextInt(window), new Object());
+        }
+        return t;
+    }
 }
@@ -30,4 +30,13 @@ public class Appends {
         }
         return t;
     }
+
+    @Benchmark
+    public TVecUnsafe benchAppendsConfined() {
+        TVecUnsafe t = TVecUnsafe.confined();
+        for (int i = 0; i < size; i++) {
+            t = t.push(null);
+        }
+        return t;
+    }
 }
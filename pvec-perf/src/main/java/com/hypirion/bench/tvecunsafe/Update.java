@@ -0,0 +1,60 @@
+package com.hypirion.bench.tvecunsafe;
+
+import java.util.Random;
+import com.hypirion.pvec.TVecUnsafe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Level;
+
+@State(Scope.Benchmark)
+public class Update {
+
+    @Param({"0", "1", "2", "3", "4", "5"})
+    public int bits;
+    int size;
+
+    Random r;
+    TVecUnsafe t;
+    TVecUnsafe tc;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        r = new Random(1);
+        size = (1 << (5*bits)) + 32;
+        t = new TVecUnsafe();
+        for (int i = 0; i < size; i++) {
+            t = t.push(new Object());
+        }
+        tc = TVecUnsafe.confined();
+        for (int i = 0; i < size; i++) {
+            tc = tc.push(new Object());
+        }
+    }
+
+    @Benchmark
+    public TVecUnsafe benchUpdate() {
+        t = t.set(r.nextInt(size - 32), new Object());
+        return t;
+    }
+
+    @Benchmark
+    public TVecUnsafe benchUpdateConfined() {
+        tc = tc.set(r.nextInt(size - 32), new Object());
+        return tc;
+    }
+
+    // 32 sets at random indices within a window of (at most) 256 elements
+    @Benchmark
+    public TVecUnsafe benchLocalSets() {
+        int window = Math.min(256, size);
+        int start = r.nextInt(size - window + 1);
+        for (int i = 0; i < 32; i++) {
+            t = t.set(start + r.nextInt(window), new Object());
+        }
+        return t;
+    }
+}
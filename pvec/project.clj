@@ -5,7 +5,7 @@
             :url "http://www.eclipse.org/legal/epl-v10.html"}
   :source-paths []
   :java-source-paths ["src"]
-  :javac-options ["-target" "1.6" "-source" "1.6" "-Xlint:-options"
+  :javac-options ["-target" "1.8" "-source" "1.8" "-Xlint:-options"
                   "-XDignore.symbol.file"] ;; <- don't do this at home.
   :aliases {"test" ["run" "-m" "com.hypirion.pvec.tests.Test"]}
   :jvm-opts []
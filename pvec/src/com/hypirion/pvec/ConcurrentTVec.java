@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2014 Jean Niklas L'orange. All rights reserved.
+ *
+ * The use and distribution terms for this software are covered by the
+ * Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ * which can be found in the file LICENSE at the root of this distribution.
+ *
+ * By using this software in any fashion, you are agreeing to be bound by
+ * the terms of this license.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.hypirion.pvec;
+
+import java.lang.reflect.Field;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import sun.misc.Unsafe;
+
+/**
+ * A mutable vector on the same 32-way trie as PVec, which any number of
+ * threads can push to and set in at once. There's no lock around the trie:
+ * Writes into different leaves only touch their own leaf, and push claims its
+ * index with an atomic increment.
+ *
+ * snapshot returns the vector as a PVec without copying it. Nodes made in the
+ * current epoch are kept in a concurrent identity set, and snapshot starts a
+ * new epoch by replacing the set. Nodes from earlier epochs may be shared with
+ * snapshots, so writers copy them and CAS the copy into the parent node before
+ * writing. Nodes of the current epoch are written to in place. Nodes are 32
+ * slots like in PVec, so snapshots share them without any extra cost.
+ *
+ * To start a new epoch, snapshot has to wait for the writes already running
+ * to finish. Writers announce themselves in one of several striped counters,
+ * so that they don't all contend on the same one.
+ *
+ * get reads the latest values without waiting, but may return null for an
+ * index which is being pushed to at the same time. Snapshots always contain
+ * every completed write. Vectors can hold up to 2^30 elements.
+ */
+public final class ConcurrentTVec {
+    private static final Unsafe unsafe;
+    static {
+        try {
+            Field theUnsafe = Unsafe.class.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = (Unsafe) theUnsafe.get(null);
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    private static long offsetOf(int i) {
+        return Unsafe.ARRAY_OBJECT_BASE_OFFSET +
+            (long) Unsafe.ARRAY_OBJECT_INDEX_SCALE * i;
+    }
+
+    private static Object arrGet(Object[] arr, int i) {
+        return unsafe.getObjectVolatile(arr, offsetOf(i));
+    }
+
+    // A release store is enough: snapshots see the write through the writer
+    // counters, and get reads with acquire semantics.
+    private static void arrSet(Object[] arr, int i, Object o) {
+        unsafe.putOrderedObject(arr, offsetOf(i), o);
+    }
+
+    private static boolean arrCas(Object[] arr, int i, Object expected,
+                                  Object o) {
+        return unsafe.compareAndSwapObject(arr, offsetOf(i), expected, o);
+    }
+
+    private static final class Root {
+        final Object[] node;
+        final int shift;
+
+        Root(Object[] node, int shift) {
+            this.node = node;
+            this.shift = shift;
+        }
+    }
+
+    // Writers add themselves to the stripe for their thread. Stripes are 16
+    // ints apart, so that they're on different cache lines.
+    private static final int STRIPES = 64;
+    private static final int PAD = 16;
+
+    private final AtomicReference<Root> root;
+    private final AtomicInteger size;
+    private final AtomicIntegerArray writers;
+    // The nodes made in the current epoch. Arrays use identity for equals and
+    // hashCode, so this is an identity set.
+    private volatile Set<Object> owned;
+    private volatile boolean freezing;
+
+    public ConcurrentTVec() {
+        owned = ConcurrentHashMap.newKeySet();
+        root = new AtomicReference<Root>(new Root(newNode(owned), 0));
+        size = new AtomicInteger();
+        writers = new AtomicIntegerArray(STRIPES * PAD);
+    }
+
+    public Object get(int i) {
+        rangeCheck(i);
+        Root r = root.get();
+        // a push to i may not have grown the trie or made its path yet
+        if (i >= (32 << r.shift)) {
+            return null;
+        }
+        Object[] node = r.node;
+        for (int level = r.shift; level > 0; level -= 5) {
+            node = (Object[]) arrGet(node, (i >>> level) & 31);
+            if (node == null) {
+                return null;
+            }
+        }
+        return arrGet(node, i & 31);
+    }
+
+    public ConcurrentTVec set(int i, Object val) {
+        rangeCheck(i);
+        final int stripe = enter();
+        try {
+            arrSet(editableLeafFor(i, owned), i & 31, val);
+        }
+        finally {
+            exit(stripe);
+        }
+        return this;
+    }
+
+    // Atomically replaces the element at i with f applied to it. f may be
+    // called more than once if other threads update the same element, and
+    // must not call snapshot.
+    public ConcurrentTVec update(int i, Fun f) {
+        rangeCheck(i);
+        final int stripe = enter();
+        try {
+            Object[] leaf = editableLeafFor(i, owned);
+            Object old;
+            do {
+                old = arrGet(leaf, i & 31);
+            } while (!arrCas(leaf, i & 31, old, f.update(old)));
+        }
+        finally {
+            exit(stripe);
+        }
+        return this;
+    }
+
+    public ConcurrentTVec push(Object val) {
+        final int stripe = enter();
+        try {
+            int i = size.getAndIncrement();
+            if (i >= 1 << 30) {
+                size.decrementAndGet();
+                throw new IllegalStateException("Vector is full");
+            }
+            arrSet(editableLeafFor(i, owned), i & 31, val);
+        }
+        finally {
+            exit(stripe);
+        }
+        return this;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    // Returns the current contents as a PVec. Waits for the writes in progress
+    // to finish, and holds back new ones until the epoch has changed.
+    public PVec snapshot() {
+        Root r;
+        int n;
+        synchronized (this) {
+            freezing = true;
+            for (int s = 0; s < STRIPES; s++) {
+                while (writers.get(s * PAD) != 0) {
+                    Thread.yield();
+                }
+            }
+            r = root.get();
+            n = size.get();
+            owned = ConcurrentHashMap.newKeySet();
+            freezing = false;
+        }
+        return toPVec(r, n);
+    }
+
+    private int enter() {
+        final int stripe = stripeFor(Thread.currentThread()) * PAD;
+        while (true) {
+            writers.incrementAndGet(stripe);
+            // snapshot sets freezing before it reads the counters, so either
+            // it sees our increment or we see freezing.
+            if (!freezing) {
+                return stripe;
+            }
+            writers.decrementAndGet(stripe);
+            while (freezing) {
+                Thread.yield();
+            }
+        }
+    }
+
+    private void exit(int stripe) {
+        writers.decrementAndGet(stripe);
+    }
+
+    private static int stripeFor(Thread t) {
+        long id = t.getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 58);
+    }
+
+    // Returns the leaf containing i, after making sure it and all its
+    // ancestors are in owned. Grows the trie if it's too small to hold i.
+    private Object[] editableLeafFor(int i, Set<Object> owned) {
+        Root r;
+        Object[] node;
+        while (true) {
+            r = root.get();
+            if (i >= (32 << r.shift)) {
+                Object[] newRoot = newNode(owned);
+                newRoot[0] = r.node;
+                if (!root.compareAndSet(r, new Root(newRoot, r.shift + 5))) {
+                    owned.remove(newRoot);
+                }
+                continue;
+            }
+            node = r.node;
+            if (!owned.contains(node)) {
+                node = copyNode(node, owned);
+                // the root may have grown or been copied by someone else
+                if (!root.compareAndSet(r, new Root(node, r.shift))) {
+                    owned.remove(node);
+                    continue;
+                }
+            }
+            break;
+        }
+        for (int level = r.shift; level > 0; level -= 5) {
+            int subidx = (i >>> level) & 31;
+            Object[] child = (Object[]) arrGet(node, subidx);
+            if (child == null) {
+                Object[] created = newNode(owned);
+                if (arrCas(node, subidx, null, created)) {
+                    child = created;
+                }
+                else {
+                    owned.remove(created);
+                    child = (Object[]) arrGet(node, subidx);
+                }
+            }
+            else if (!owned.contains(child)) {
+                Object[] copy = copyNode(child, owned);
+                // if we lose, the winner's node is from this epoch as well
+                if (arrCas(node, subidx, child, copy)) {
+                    child = copy;
+                }
+                else {
+                    owned.remove(copy);
+                    child = (Object[]) arrGet(node, subidx);
+                }
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    // Turns the trie into a PVec: The last leaf becomes the tail, and the
+    // right edge of the trie is cut down to end before it. All other nodes are
+    // shared, which is safe as no one writes to them after this epoch.
+    private static PVec toPVec(Root r, int n) {
+        if (n == 0) {
+            return new PVec();
+        }
+        final int tailOffset = (n - 1) & (~31);
+        Object[] node = r.node;
+        for (int level = r.shift; level > 0; level -= 5) {
+            node = (Object[]) node[(tailOffset >>> level) & 31];
+        }
+        Object[] tail = node;
+        if (tailOffset == 0) {
+            return new PVec(n, 0, 0, null, tail);
+        }
+        int newShift = 0;
+        while ((tailOffset >>> 5) > (1 << newShift)) {
+            newShift += 5;
+        }
+        node = r.node;
+        for (int level = r.shift; level > newShift; level -= 5) {
+            node = (Object[]) node[0];
+        }
+        return new PVec(n, 0, newShift, trimNode(newShift, node, tailOffset - 1),
+                        tail);
+    }
+
+    // Copies the nodes on the path to last, without anything to the right of
+    // it. Subtrees which are kept whole are shared.
+    private static Object[] trimNode(int level, Object[] node, int last) {
+        if (level == 0) {
+            return node;
+        }
+        int subidx = (last >>> level) & 31;
+        Object[] trimmed = new Object[32];
+        System.arraycopy(node, 0, trimmed, 0, subidx);
+        trimmed[subidx] = trimNode(level - 5, (Object[]) node[subidx], last);
+        return trimmed;
+    }
+
+    private void rangeCheck(int index) {
+        int n = size.get();
+        if (index < 0 || index >= n)
+            throw new IndexOutOfBoundsException("Index:"+index+", Size:"+n);
+    }
+
+    // Nodes are added to owned before they're put into the trie, so whoever
+    // finds them there sees that they're from this epoch.
+    private static Object[] newNode(Set<Object> owned) {
+        Object[] node = new Object[32];
+        owned.add(node);
+        return node;
+    }
+
+    private static Object[] copyNode(Object[] node, Set<Object> owned) {
+        Object[] copy = new Object[32];
+        for (int i = 0; i < 32; i++) {
+            copy[i] = arrGet(node, i);
+        }
+        owned.add(copy);
+        return copy;
+    }
+}
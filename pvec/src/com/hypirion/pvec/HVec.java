@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2014 Jean Niklas L'orange. All rights reserved.
+ *
+ * The use and distribution terms for this software are covered by the
+ * Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ * which can be found in the file LICENSE at the root of this distribution.
+ *
+ * By using this software in any fashion, you are agreeing to be bound by
+ * the terms of this license.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.hypirion.pvec;
+
+import java.util.Iterator;
+
+/**
+ * A persistent vector with one subclass per trie height. HVec0 has no trie at
+ * all, HVec1 has a single leaf as root, and so on up to HVec6. Each subclass
+ * walks the trie in get and set without any loop. Push and pop are shared,
+ * and pick the subclass for the new height through make. The largest trie an
+ * HVec6 can hold is 2^30 elements.
+ */
+public abstract class HVec implements Iterable {
+    final int size;
+    final Object[] root;
+    final Object[] tail;
+
+    private static final Object[] EMPTY_TAIL = new Object[0];
+    private static final HVec EMPTY = new HVec0(0, EMPTY_TAIL);
+
+    HVec(int size, Object[] root, Object[] tail) {
+        this.size = size;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    public static HVec empty() {
+        return EMPTY;
+    }
+
+    static HVec make(int size, int shift, Object[] root, Object[] tail) {
+        if (root == null) {
+            return new HVec0(size, tail);
+        }
+        switch (shift) {
+        case 0: return new HVec1(size, root, tail);
+        case 5: return new HVec2(size, root, tail);
+        case 10: return new HVec3(size, root, tail);
+        case 15: return new HVec4(size, root, tail);
+        case 20: return new HVec5(size, root, tail);
+        case 25: return new HVec6(size, root, tail);
+        default:
+            throw new IllegalStateException("Vector is full");
+        }
+    }
+
+    public static HVec fromArray(Object[] arr) {
+        int n = arr.length;
+        if (n == 0) {
+            return EMPTY;
+        }
+        int ts = ((n-1) & 31)+1;
+        int trieSize = n - ts;
+        Object[] newTail = new Object[ts];
+        System.arraycopy(arr, trieSize, newTail, 0, ts);
+        int count = trieSize >>> 5;
+        if (count == 0) {
+            return new HVec0(n, newTail);
+        }
+        Object[] nodes = new Object[count];
+        for (int i = 0; i < count; i++) {
+            Object[] leaf = new Object[32];
+            System.arraycopy(arr, i << 5, leaf, 0, 32);
+            nodes[i] = leaf;
+        }
+        int shift = 0;
+        while (count > 1) {
+            int parents = (count + 31) >>> 5;
+            for (int i = 0; i < parents; i++) {
+                Object[] parent = new Object[32];
+                int len = Math.min(32, count - (i << 5));
+                System.arraycopy(nodes, i << 5, parent, 0, len);
+                nodes[i] = parent;
+            }
+            count = parents;
+            shift += 5;
+        }
+        return make(n, shift, (Object[]) nodes[0], newTail);
+    }
+
+    public abstract Object get(int i);
+
+    public abstract HVec set(int i, Object val);
+
+    // The shift of the root. Meaningless for HVec0.
+    abstract int shift();
+
+    public HVec push(Object val) {
+        int ts = tailSize();
+        if (ts != 32) {
+            Object[] newTail = new Object[ts+1];
+            System.arraycopy(tail, 0, newTail, 0, ts);
+            newTail[ts] = val;
+            return make(size+1, shift(), root, newTail);
+        }
+        else { // have to insert tail into root.
+            Object[] newTail = new Object[]{val};
+            // Special case: If old size == 32, then tail is new root
+            if (size == 32) {
+                return new HVec1(size+1, tail, newTail);
+            }
+            int shift = shift();
+            // check if the root is completely filled. Must also increment
+            // shift if that's the case.
+            if ((size >>> 5) > (1 << shift)) {
+                Object[] newRoot = new Object[32];
+                newRoot[0] = root;
+                newRoot[1] = newPath(shift, tail);
+                return make(size+1, shift+5, newRoot, newTail);
+            }
+            else { // still space in root
+                Object[] newRoot = pushLeaf(shift, size-1, root, tail);
+                return make(size+1, shift, newRoot, newTail);
+            }
+        }
+    }
+
+    private static Object[] pushLeaf(int shift, int i, Object[] root, Object[] tail) {
+        Object[] newRoot = root.clone();
+        Object[] node = newRoot;
+        for (int level = shift; level > 5; level -= 5) {
+            int subidx = (i >>> level) & 31;
+            Object[] child = (Object[]) node[subidx];
+            if (child == null) {
+                node[subidx] = newPath(level - 5, tail);
+                return newRoot;
+            }
+            child = child.clone();
+            node[subidx] = child;
+            node = child;
+        }
+        node[(i >>> 5) & 31] = tail;
+        return newRoot;
+    }
+
+    private static Object[] newPath(int levels, Object[] tail) {
+        Object[] topNode = tail;
+        for (int level = levels; level > 0; level -= 5) {
+            Object[] newTop = new Object[32];
+            newTop[0] = topNode;
+            topNode = newTop;
+        }
+        return topNode;
+    }
+
+    public HVec pop() {
+        if (size == 0) {
+            throw new IllegalStateException("Vector is already empty");
+        }
+        if (size == 1) {
+            return EMPTY;
+        }
+        int ts = tailSize();
+        if (ts > 1) {
+            Object[] newTail = new Object[ts - 1];
+            System.arraycopy(tail, 0, newTail, 0, ts - 1);
+            return make(size-1, shift(), root, newTail);
+        }
+        final int newTrieSize = size - 33;
+        // special case: if new size is 32, then the root is the new tail
+        if (newTrieSize == 0) {
+            return new HVec0(32, root);
+        }
+        final int shift = shift();
+        // check if we can reduce the trie's height
+        if (newTrieSize == 1 << shift) {
+            Object[] node = (Object[]) root[1];
+            for (int level = shift - 5; level > 0; level -= 5) {
+                node = (Object[]) node[0];
+            }
+            return make(size-1, shift-5, (Object[]) root[0], node);
+        }
+        // diverges contain information on when the path diverges.
+        int diverges = newTrieSize ^ (newTrieSize - 1);
+        boolean hasDiverged = false;
+        Object[] newRoot = root.clone();
+        Object[] node = newRoot;
+        for (int level = shift; level > 0; level -= 5) {
+            int subidx = (newTrieSize >>> level) & 31;
+            Object[] child = (Object[]) node[subidx];
+            if (hasDiverged) {
+                node = child;
+            } else if ((diverges >>> level) != 0) {
+                hasDiverged = true;
+                node[subidx] = null;
+                node = child;
+            } else {
+                child = child.clone();
+                node[subidx] = child;
+                node = child;
+            }
+        }
+        return make(size-1, shift, newRoot, node);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    final void rangeCheck(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index:"+index+", Size:"+size);
+    }
+
+    final int tailOffset() {
+        return (size - 1) & (~31);
+    }
+
+    final int tailSize() {
+        if (size == 0)
+            return 0;
+        else
+            return ((size-1) & 31)+1;
+    }
+
+    final Object[] setTail(int i, Object val) {
+        Object[] newTail = tail.clone();
+        newTail[i & 31] = val;
+        return newTail;
+    }
+
+    public Iterator iterator() {
+        return new VecIter(size, shift(), root, tail, 0);
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2014 Jean Niklas L'orange. All rights reserved.
+ *
+ * The use and distribution terms for this software are covered by the
+ * Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ * which can be found in the file LICENSE at the root of this distribution.
+ *
+ * By using this software in any fashion, you are agreeing to be bound by
+ * the terms of this license.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.hypirion.pvec;
+
+// No trie, every element is in the tail.
+final class HVec0 extends HVec {
+    HVec0(int size, Object[] tail) {
+        super(size, null, tail);
+    }
+
+    int shift() {
+        return 0;
+    }
+
+    public Object get(int i) {
+        rangeCheck(i);
+        return tail[i];
+    }
+
+    public HVec set(int i, Object val) {
+        rangeCheck(i);
+        return new HVec0(size, setTail(i, val));
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2014 Jean Niklas L'orange. All rights reserved.
+ *
+ * The use and distribution terms for this software are covered by the
+ * Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ * which can be found in the file LICENSE at the root of this distribution.
+ *
+ * By using this software in any fashion, you are agreeing to be bound by
+ * the terms of this license.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.hypirion.pvec;
+
+// The root is a leaf.
+final class HVec1 extends HVec {
+    HVec1(int size, Object[] root, Object[] tail) {
+        super(size, root, tail);
+    }
+
+    int shift() {
+        return 0;
+    }
+
+    public Object get(int i) {
+        rangeCheck(i);
+        if (i >= tailOffset()) {
+            return tail[i & 31];
+        }
+        return root[i & 31];
+    }
+
+    public HVec set(int i, Object val) {
+        rangeCheck(i);
+        if (i >= tailOffset()) {
+            return new HVec1(size, root, setTail(i, val));
+        }
+        Object[] n0 = root.clone();
+        n0[i & 31] = val;
+        return new HVec1(size, n0, tail);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2014 Jean Niklas L'orange. All rights reserved.
+ *
+ * The use and distribution terms for this software are covered by the
+ * Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ * which can be found in the file LICENSE at the root of this distribution.
+ *
+ * By using this software in any fashion, you are agreeing to be bound by
+ * the terms of this license.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.hypirion.pvec;
+
+// The root is at shift 5.
+final class HVec2 extends HVec {
+    HVec2(int size, Object[] root, Object[] tail) {
+        super(size, root, tail);
+    }
+
+    int shift() {
+        return 5;
+    }
+
+    public Object get(int i) {
+        rangeCheck(i);
+        if (i >= tailOffset()) {
+            return tail[i & 31];
+        }
+        Object[] n0 = (Object[]) root[(i >>> 5) & 31];
+        return n0[i & 31];
+    }
+
+    public HVec set(int i, Object val) {
+        rangeCheck(i);
+        if (i >= tailOffset()) {
+            return new HVec2(size, root, setTail(i, val));
+        }
+        Object[] n1 = root.clone();
+        Object[] n0 = ((Object[]) n1[(i >>> 5) & 31]).clone();
+        n1[(i >>> 5) & 31] = n0;
+        n0[i & 31] = val;
+        return new HVec2(size, n1, tail);
+    }
+}
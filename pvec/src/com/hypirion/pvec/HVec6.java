@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2014 Jean Niklas L'orange. All rights reserved.
+ *
+ * The use and distribution terms for this software are covered by the
+ * Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ * which can be found in the file LICENSE at the root of this distribution.
+ *
+ * By using this software in any fashion, you are agreeing to be bound by
+ * the terms of this license.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.hypirion.pvec;
+
+// The root is at shift 25.
+final class HVec6 extends HVec {
+    HVec6(int size, Object[] root, Object[] tail) {
+        super(size, root, tail);
+    }
+
+    int shift() {
+        return 25;
+    }
+
+    public Object get(int i) {
+        rangeCheck(i);
+        if (i >= tailOffset()) {
+            return tail[i & 31];
+        }
+        Object[] n4 = (Object[]) root[(i >>> 25) & 31];
+        Object[] n3 = (Object[]) n4[(i >>> 20) & 31];
+        Object[] n2 = (Object[]) n3[(i >>> 15) & 31];
+        Object[] n1 = (Object[]) n2[(i >>> 10) & 31];
+        Object[] n0 = (Object[]) n1[(i >>> 5) & 31];
+        return n0[i & 31];
+    }
+
+    public HVec set(int i, Object val) {
+        rangeCheck(i);
+        if (i >= tailOffset()) {
+            return new HVec6(size, root, setTail(i, val));
+        }
+        Object[] n5 = root.clone();
+        Object[] n4 = ((Object[]) n5[(i >>> 25) & 31]).clone();
+        n5[(i >>> 25) & 31] = n4;
+        Object[] n3 = ((Object[]) n4[(i >>> 20) & 31]).clone();
+        n4[(i >>> 20) & 31] = n3;
+        Object[] n2 = ((Object[]) n3[(i >>> 15) & 31]).clone();
+        n3[(i >>> 15) & 31] = n2;
+        Object[] n1 = ((Object[]) n2[(i >>> 10) & 31]).clone();
+        n2[(i >>> 10) & 31] = n1;
+        Object[] n0 = ((Object[]) n1[(i >>> 5) & 31]).clone();
+        n1[(i >>> 5) & 31] = n0;
+        n0[i & 31] = val;
+        return new HVec6(size, n5, tail);
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2014 Jean Niklas L'orange. All rights reserved.
+ *
+ * The use and distribution terms for this software are covered by the
+ * Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ * which can be found in the file LICENSE at the root of this distribution.
+ *
+ * By using this software in any fashion, you are agreeing to be bound by
+ * the terms of this license.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.hypirion.pvec;
+
+// PVec with double[] leaves and tail. Interior nodes are still Object arrays,
+// and root is a double[] when shift is 0. Leaves made by a transient are one
+// element longer, see TDoubleVec.
+public final class PDoubleVec {
+    private final int size;
+    private final int shift;
+    private final double[] tail;
+    private final Object root;
+
+    private static final double[] EMPTY_TAIL = new double[0];
+
+    public PDoubleVec() {
+        size = 0;
+        shift = 0;
+        tail = EMPTY_TAIL;
+        root = null;
+    }
+
+    PDoubleVec(int size, int shift, Object root, double[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.tail = tail;
+        this.root = root;
+    }
+
+    public static PDoubleVec fromArray(double[] arr) {
+        return fromArray(arr, 0, arr.length);
+    }
+
+    public static PDoubleVec fromArray(double[] arr, int from, int to) {
+        if (from < 0 || to > arr.length || from > to)
+            throw new IndexOutOfBoundsException("From:"+from+", To:"+to+
+                                                ", Length:"+arr.length);
+        int n = to - from;
+        if (n == 0) {
+            return new PDoubleVec();
+        }
+        int ts = ((n-1) & 31)+1;
+        int trieSize = n - ts;
+        double[] newTail = new double[ts];
+        System.arraycopy(arr, from + trieSize, newTail, 0, ts);
+        int count = trieSize >>> 5;
+        if (count == 0) {
+            return new PDoubleVec(n, 0, null, newTail);
+        }
+        Object[] nodes = new Object[count];
+        for (int i = 0; i < count; i++) {
+            double[] leaf = new double[32];
+            System.arraycopy(arr, from + (i << 5), leaf, 0, 32);
+            nodes[i] = leaf;
+        }
+        int shift = 0;
+        while (count > 1) {
+            int parents = (count + 31) >>> 5;
+            for (int i = 0; i < parents; i++) {
+                Object[] parent = new Object[32];
+                int len = Math.min(32, count - (i << 5));
+                System.arraycopy(nodes, i << 5, parent, 0, len);
+                nodes[i] = parent;
+            }
+            count = parents;
+            shift += 5;
+        }
+        return new PDoubleVec(n, shift, nodes[0], newTail);
+    }
+
+    public PDoubleVec set(int i, double val) {
+        rangeCheck(i);
+        if (i >= tailOffset()) {
+            double[] newTail = tail.clone();
+            newTail[i & 31] = val;
+            return new PDoubleVec(size, shift, root, newTail);
+        }
+        if (shift == 0) {
+            double[] newRoot = ((double[]) root).clone();
+            newRoot[i & 31] = val;
+            return new PDoubleVec(size, shift, newRoot, tail);
+        }
+        Object[] newRoot = ((Object[]) root).clone();
+        Object[] node = newRoot;
+        for (int level = shift; level > 5; level -= 5) {
+            int subidx = (i >>> level) & 31;
+            Object[] child = (Object[]) node[subidx];
+            child = child.clone();
+            node[subidx] = child;
+            node = child;
+        }
+        int subidx = (i >>> 5) & 31;
+        double[] leaf = ((double[]) node[subidx]).clone();
+        leaf[i & 31] = val;
+        node[subidx] = leaf;
+        return new PDoubleVec(size, shift, newRoot, tail);
+    }
+
+    public double get(int i) {
+        rangeCheck(i);
+        if (i >= tailOffset()) {
+            return tail[i & 31];
+        }
+        else {
+            Object node = root;
+            for (int level = shift; level > 0; level -= 5) {
+                node = ((Object[]) node)[(i >>> level) & 31];
+            }
+            return ((double[]) node)[i & 31];
+        }
+    }
+
+    public PDoubleVec push(double val) {
+        int ts = tailSize();
+        if (ts != 32) {
+            double[] newTail = new double[ts+1];
+            System.arraycopy(tail, 0, newTail, 0, ts);
+            newTail[ts] = val;
+            return new PDoubleVec(size+1, shift, root, newTail);
+        }
+        else { // have to insert tail into root.
+            double[] newTail = new double[]{val};
+            // Special case: If old size == 32, then tail is new root
+            if (size == 32) {
+                return new PDoubleVec(size+1, 0, tail, newTail);
+            }
+            // check if the root is completely filled. Must also increment
+            // shift if that's the case.
+            if ((size >>> 5) > (1 << shift)) {
+                Object[] newRoot = new Object[32];
+                newRoot[0] = root;
+                newRoot[1] = newPath(shift, tail);
+                return new PDoubleVec(size+1, shift+5, newRoot, newTail);
+            }
+            else { // still space in root
+                Object[] newRoot = pushLeaf(shift, size-1, (Object[]) root, tail);
+                return new PDoubleVec(size+1, shift, newRoot, newTail);
+            }
+        }
+    }
+
+    private static Object[] pushLeaf(int shift, int i, Object[] root, double[] tail) {
+        Object[] newRoot = root.clone();
+        Object[] node = newRoot;
+        for (int level = shift; level > 5; level -= 5) {
+            int subidx = (i >>> level) & 31;
+            Object[] child = (Object[]) node[subidx];
+            if (child == null) {
+                node[subidx] = newPath(level - 5, tail);
+                return newRoot;
+            }
+            child = child.clone();
+            node[subidx] = child;
+            node = child;
+        }
+        node[(i >>> 5) & 31] = tail;
+        return newRoot;
+    }
+
+    private static Object newPath(int levels, double[] tail) {
+        Object topNode = tail;
+        for (int level = levels; level > 0; level -= 5) {
+            Object[] newTop = new Object[32];
+            newTop[0] = topNode;
+            topNode = newTop;
+        }
+        return topNode;
+    }
+
+    public PDoubleVec pop() {
+        if (size == 0) {
+            throw new IllegalStateException("Vector is already empty");
+        }
+        if (size == 1) {
+            return new PDoubleVec();
+        }
+        int ts = tailSize();
+        if (ts > 1) {
+            double[] newTail = new double[ts - 1];
+            System.arraycopy(tail, 0, newTail, 0, ts - 1);
+            return new PDoubleVec(size-1, shift, root, newTail);
+        }
+        final int newTrieSize = size - 33;
+        // special case: if new size is 32, then the root is the new tail
+        if (newTrieSize == 0) {
+            return new PDoubleVec(32, 0, null, (double[]) root);
+        }
+        // check if we can reduce the trie's height
+        if (newTrieSize == 1 << shift) {
+            Object[] oldRoot = (Object[]) root;
+            Object node = oldRoot[1];
+            for (int level = shift - 5; level > 0; level -= 5) {
+                node = ((Object[]) node)[0];
+            }
+            return new PDoubleVec(size-1, shift-5, oldRoot[0], (double[]) node);
+        }
+        // diverges contain information on when the path diverges.
+        int diverges = newTrieSize ^ (newTrieSize - 1);
+        boolean hasDiverged = false;
+        Object[] newRoot = ((Object[]) root).clone();
+        Object[] node = newRoot;
+        for (int level = shift; level > 5; level -= 5) {
+            int subidx = (newTrieSize >>> level) & 31;
+            Object[] child = (Object[]) node[subidx];
+            if (hasDiverged) {
+                node = child;
+            } else if ((diverges >>> level) != 0) {
+                hasDiverged = true;
+                node[subidx] = null;
+                node = child;
+            } else {
+                child = child.clone();
+                node[subidx] = child;
+                node = child;
+            }
+        }
+        // the path always diverges at the leaf, as it's the one we remove.
+        int subidx = (newTrieSize >>> 5) & 31;
+        double[] newTail = (double[]) node[subidx];
+        if (!hasDiverged) {
+            node[subidx] = null;
+        }
+        return new PDoubleVec(size-1, shift, newRoot, newTail);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void rangeCheck(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index:"+index+", Size:"+size);
+    }
+
+    private int tailOffset() {
+        return (size - 1) & (~31);
+    }
+
+    private int tailSize() {
+        if (size == 0)
+            return 0;
+        else
+            return ((size-1) & 31)+1;
+    }
+
+    public TDoubleVec asTransient() {
+        return new TDoubleVec(size, shift, root, tail);
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2014 Jean Niklas L'orange. All rights reserved.
+ *
+ * The use and distribution terms for this software are covered by the
+ * Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ * which can be found in the file LICENSE at the root of this distribution.
+ *
+ * By using this software in any fashion, you are agreeing to be bound by
+ * the terms of this license.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.hypirion.pvec;
+
+// PVec with int[] leaves and tail. Interior nodes are still Object arrays,
+// and root is an int[] when shift is 0. Leaves made by a transient are two
+// elements longer, see TIntVec.
+public final class PIntVec {
+    private final int size;
+    private final int shift;
+    private final int[] tail;
+    private final Object root;
+
+    private static final int[] EMPTY_TAIL = new int[0];
+
+    public PIntVec() {
+        size = 0;
+        shift = 0;
+        tail = EMPTY_TAIL;
+        root = null;
+    }
+
+    PIntVec(int size, int shift, Object root, int[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.tail = tail;
+        this.root = root;
+    }
+
+    public static PIntVec fromArray(int[] arr) {
+        return fromArray(arr, 0, arr.length);
+    }
+
+    public static PIntVec fromArray(int[] arr, int from, int to) {
+        if (from < 0 || to > arr.length || from > to)
+            throw new IndexOutOfBoundsException("From:"+from+", To:"+to+
+                                                ", Length:"+arr.length);
+        int n = to - from;
+        if (n == 0) {
+            return new PIntVec();
+        }
+        int ts = ((n-1) & 31)+1;
+        int trieSize = n - ts;
+        int[] newTail = new int[ts];
+        System.arraycopy(arr, from + trieSize, newTail, 0, ts);
+        int count = trieSize >>> 5;
+        if (count == 0) {
+            return new PIntVec(n, 0, null, newTail);
+        }
+        Object[] nodes = new Object[count];
+        for (int i = 0; i < count; i++) {
+            int[] leaf = new int[32];
+            System.arraycopy(arr, from + (i << 5), leaf, 0, 32);
+            nodes[i] = leaf;
+        }
+        int shift = 0;
+        while (count > 1) {
+            int parents = (count + 31) >>> 5;
+            for (int i = 0; i < parents; i++) {
+                Object[] parent = new Object[32];
+                int len = Math.min(32, count - (i << 5));
+                System.arraycopy(nodes, i << 5, parent, 0, len);
+                nodes[i] = parent;
+            }
+            count = parents;
+            shift += 5;
+        }
+        return new PIntVec(n, shift, nodes[0], newTail);
+    }
+
+    public PIntVec set(int i, int val) {
+        rangeCheck(i);
+        if (i >= tailOffset()) {
+            int[] newTail = tail.clone();
+            newTail[i & 31] = val;
+            return new PIntVec(size, shift, root, newTail);
+        }
+        if (shift == 0) {
+            int[] newRoot = ((int[]) root).clone();
+            newRoot[i & 31] = val;
+            return new PIntVec(size, shift, newRoot, tail);
+        }
+        Object[] newRoot = ((Object[]) root).clone();
+        Object[] node = newRoot;
+        for (int level = shift; level > 5; level -= 5) {
+            int subidx = (i >>> level) & 31;
+            Object[] child = (Object[]) node[subidx];
+            child = child.clone();
+            node[subidx] = child;
+            node = child;
+        }
+        int subidx = (i >>> 5) & 31;
+        int[] leaf = ((int[]) node[subidx]).clone();
+        leaf[i & 31] = val;
+        node[subidx] = leaf;
+        return new PIntVec(size, shift, newRoot, tail);
+    }
+
+    public int get(int i) {
+        rangeCheck(i);
+        if (i >= tailOffset()) {
+            return tail[i & 31];
+        }
+        else {
+            Object node = root;
+            for (int level = shift; level > 0; level -= 5) {
+                node = ((Object[]) node)[(i >>> level) & 31];
+            }
+            return ((int[]) node)[i & 31];
+        }
+    }
+
+    public PIntVec push(int val) {
+        int ts = tailSize();
+        if (ts != 32) {
+            int[] newTail = new int[ts+1];
+            System.arraycopy(tail, 0, newTail, 0, ts);
+            newTail[ts] = val;
+            return new PIntVec(size+1, shift, root, newTail);
+        }
+        else { // have to insert tail into root.
+            int[] newTail = new int[]{val};
+            // Special case: If old size == 32, then tail is new root
+            if (size == 32) {
+                return new PIntVec(size+1, 0, tail, newTail);
+            }
+            // check if the root is completely filled. Must also increment
+            // shift if that's the case.
+            if ((size >>> 5) > (1 << shift)) {
+                Object[] newRoot = new Object[32];
+                newRoot[0] = root;
+                newRoot[1] = newPath(shift, tail);
+                return new PIntVec(size+1, shift+5, newRoot, newTail);
+            }
+            else { // still space in root
+                Object[] newRoot = pushLeaf(shift, size-1, (Object[]) root, tail);
+                return new PIntVec(size+1, shift, newRoot, newTail);
+            }
+        }
+    }
+
+    private static Object[] pushLeaf(int shift, int i, Object[] root, int[] tail) {
+        Object[] newRoot = root.clone();
+        Object[] node = newRoot;
+        for (int level = shift; level > 5; level -= 5) {
+            int subidx = (i >>> level) & 31;
+            Object[] child = (Object[]) node[subidx];
+            if (child == null) {
+                node[subidx] = newPath(level - 5, tail);
+                return newRoot;
+            }
+            child = child.clone();
+            node[subidx] = child;
+            node = child;
+        }
+        node[(i >>> 5) & 31] = tail;
+        return newRoot;
+    }
+
+    private static Object newPath(int levels, int[] tail) {
+        Object topNode = tail;
+        for (int level = levels; level > 0; level -= 5) {
+            Object[] newTop = new Object[32];
+            newTop[0] = topNode;
+            topNode = newTop;
+        }
+        return topNode;
+    }
+
+    public PIntVec pop() {
+        if (size == 0) {
+            throw new IllegalStateException("Vector is already empty");
+        }
+        if (size == 1) {
+            return new PIntVec();
+        }
+        int ts = tailSize();
+        if (ts > 1) {
+            int[] newTail = new int[ts - 1];
+            System.arraycopy(tail, 0, newTail, 0, ts - 1);
+            return new PIntVec(size-1, shift, root, newTail);
+        }
+        final int newTrieSize = size - 33;
+        // special case: if new size is 32, then the root is the new tail
+        if (newTrieSize == 0) {
+            return new PIntVec(32, 0, null, (int[]) root);
+        }
+        // check if we can reduce the trie's height
+        if (newTrieSize == 1 << shift) {
+            Object[] oldRoot = (Object[]) root;
+            Object node = oldRoot[1];
+            for (int level = shift - 5; level > 0; level -= 5) {
+                node = ((Object[]) node)[0];
+            }
+            return new PIntVec(size-1, shift-5, oldRoot[0], (int[]) node);
+        }
+        // diverges contain information on when the path diverges.
+        int diverges = newTrieSize ^ (newTrieSize - 1);
+        boolean hasDiverged = false;
+        Object[] newRoot = ((Object[]) root).clone();
+        Object[] node = newRoot;
+        for (int level = shift; level > 5; level -= 5) {
+            int subidx = (newTrieSize >>> level) & 31;
+            Object[] child = (Object[]) node[subidx];
+            if (hasDiverged) {
+                node = child;
+            } else if ((diverges >>> level) != 0) {
+                hasDiverged = true;
+                node[subidx] = null;
+                node = child;
+            } else {
+                child = child.clone();
+                node[subidx] = child;
+                node = child;
+            }
+        }
+        // the path always diverges at the leaf, as it's the one we remove.
+        int subidx = (newTrieSize >>> 5) & 31;
+        int[] newTail = (int[]) node[subidx];
+        if (!hasDiverged) {
+            node[subidx] = null;
+        }
+        return new PIntVec(size-1, shift, newRoot, newTail);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void rangeCheck(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index:"+index+", Size:"+size);
+    }
+
+    private int tailOffset() {
+        return (size - 1) & (~31);
+    }
+
+    private int tailSize() {
+        if (size == 0)
+            return 0;
+        else
+            return ((size-1) & 31)+1;
+    }
+
+    public TIntVec asTransient() {
+        return new TIntVec(size, shift, root, tail);
+    }
+}
@@ -13,10 +13,25 @@
 
 package com.hypirion.pvec;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public final class PVec implements Iterable {
+    // size is where the vector ends in the trie, and offset is where it starts:
+    // subvec hides a prefix rather than moving elements. Hidden elements are
+    // always nulled out, so they can be garbage collected. If offset is not
+    // zero, the trie contains at least one visible element. The tail may be
+    // longer than tailSize when it's shared with a PVecFixedTail, so only the
+    // first tailSize elements of it are used.
     private final int size;
+    private final int offset;
     private final int shift;
     private final Object[] tail;
     private final Object[] root;
@@ -25,24 +40,109 @@ public final class PVec implements Iterable {
 
     public PVec() {
         size = 0;
+        offset = 0;
         shift = 0;
         tail = EMPTY_TAIL;
         root = null;
     }
 
-    PVec(int size, int shift, Object[] root, Object[] tail) {
+    PVec(int size, int offset, int shift, Object[] root, Object[] tail) {
         this.size = size;
+        this.offset = offset;
         this.shift = shift;
         this.tail = tail;
         this.root = root;
     }
 
+    public static PVec fromArray(Object[] arr) {
+        return fromArray(arr, 0, arr.length);
+    }
+
+    // Builds the trie bottom-up: the input is sliced into full leaves, and
+    // every parent level is then assembled directly from the level below. No
+    // tails are grown and no paths are cloned, as a push loop would do.
+    public static PVec fromArray(Object[] arr, int from, int to) {
+        if (from < 0 || to > arr.length || from > to)
+            throw new IndexOutOfBoundsException("From:"+from+", To:"+to+
+                                                ", Length:"+arr.length);
+        int n = to - from;
+        if (n == 0) {
+            return new PVec();
+        }
+        int ts = ((n-1) & 31)+1;
+        int trieSize = n - ts;
+        Object[] newTail = new Object[ts];
+        System.arraycopy(arr, from + trieSize, newTail, 0, ts);
+        Object[] leaves = new Object[trieSize >>> 5];
+        for (int i = 0; i < leaves.length; i++) {
+            Object[] leaf = new Object[32];
+            System.arraycopy(arr, from + (i << 5), leaf, 0, 32);
+            leaves[i] = leaf;
+        }
+        return fromLeaves(n, leaves, leaves.length, newTail);
+    }
+
+    public static PVec fromCollection(Collection coll) {
+        return fromArray(coll.toArray());
+    }
+
+    public static PVec fromIterable(Iterable iterable) {
+        if (iterable instanceof Collection) {
+            return fromCollection((Collection) iterable);
+        }
+        ArrayList<Object[]> leaves = new ArrayList<Object[]>();
+        Object[] leaf = new Object[32];
+        int n = 0;
+        for (Object o : iterable) {
+            if (n != 0 && (n & 31) == 0) {
+                leaves.add(leaf);
+                leaf = new Object[32];
+            }
+            leaf[n & 31] = o;
+            n++;
+        }
+        if (n == 0) {
+            return new PVec();
+        }
+        // the last leaf we filled is the tail.
+        int ts = ((n-1) & 31)+1;
+        Object[] newTail = leaf;
+        if (ts != 32) {
+            newTail = new Object[ts];
+            System.arraycopy(leaf, 0, newTail, 0, ts);
+        }
+        return fromLeaves(n, leaves.toArray(), leaves.size(), newTail);
+    }
+
+    // Assembles the trie from count full leaves. nodes is used as scratch
+    // space: each parent level is written over the front of the level below.
+    static PVec fromLeaves(int size, Object[] nodes, int count,
+                           Object[] tail) {
+        if (count == 0) {
+            return new PVec(size, 0, 0, null, tail);
+        }
+        int shift = 0;
+        while (count > 1) {
+            int parents = (count + 31) >>> 5;
+            for (int i = 0; i < parents; i++) {
+                Object[] parent = new Object[32];
+                int len = Math.min(32, count - (i << 5));
+                System.arraycopy(nodes, i << 5, parent, 0, len);
+                nodes[i] = parent;
+            }
+            count = parents;
+            shift += 5;
+        }
+        return new PVec(size, 0, shift, (Object[]) nodes[0], tail);
+    }
+
     public PVec set(int i, Object val) {
         rangeCheck(i);
+        i += offset;
         if (i >= tailOffset()) {
             Object[] newTail = tail.clone();
             newTail[i & 31] = val;
-            return new PVec(size, shift, root, newTail);
+            return new PVec(size, offset, shift, root, newTail);
         }
         else {
             Object[] newRoot = root.clone();
@@ -55,12 +155,156 @@ public final class PVec implements Iterable {
                 node = child;
             }
             node[i & 31] = val;
-            return new PVec(size, shift, newRoot, tail);
+            return new PVec(size, offset, shift, newRoot, tail);
+        }
+    }
+
+    // Same as set(i, f.update(get(i))), but walks and clones the path only
+    // once.
+    public PVec update(int i, Fun f) {
+        rangeCheck(i);
+        i += offset;
+        if (i >= tailOffset()) {
+            Object[] newTail = tail.clone();
+            newTail[i & 31] = f.update(newTail[i & 31]);
+            return new PVec(size, offset, shift, root, newTail);
+        }
+        else {
+            Object[] newRoot = root.clone();
+            Object[] node = newRoot;
+            for (int level = shift; level > 0; level -= 5) {
+                int subidx = (i >>> level) & 31;
+                Object[] child = (Object[]) node[subidx];
+                child = child.clone();
+                node[subidx] = child;
+                node = child;
+            }
+            node[i & 31] = f.update(node[i & 31]);
+            return new PVec(size, offset, shift, newRoot, tail);
+        }
+    }
+
+    public PVec setAll(int[] indices, Object[] values) {
+        if (indices.length != values.length)
+            throw new IllegalArgumentException("Indices:"+indices.length+
+                                               ", Values:"+values.length);
+        final int k = indices.length;
+        if (k == 0) {
+            return this;
+        }
+        // Sort the updates by index, so that all updates within a subtree end
+        // up next to each other. The position of the update sits in the low
+        // bits to keep the sort stable: The last update to an index wins.
+        long[] order = new long[k];
+        for (int j = 0; j < k; j++) {
+            int i = indices[j];
+            if (i < 0 || i >= size - offset)
+                throw new IndexOutOfBoundsException("Index:"+i+", Size:"+
+                                                    (size - offset));
+            order[j] = ((long) (i + offset) << 32) | j;
+        }
+        Arrays.sort(order);
+        final int to = tailOffset();
+        int split = 0;
+        while (split < k && (int) (order[split] >>> 32) < to) {
+            split++;
         }
+        Object[] newRoot = root;
+        if (split > 0) {
+            newRoot = setAllNode(shift, root, order, 0, split, values);
+        }
+        Object[] newTail = tail;
+        if (split < k) {
+            newTail = tail.clone();
+            for (int j = split; j < k; j++) {
+                newTail[(int) (order[j] >>> 32) & 31] = values[(int) order[j]];
+            }
+        }
+        return new PVec(size, offset, shift, newRoot, newTail);
+    }
+
+    // Applies order[from..to) to the subtree in node, cloning it only once.
+    private static Object[] setAllNode(int level, Object[] node, long[] order,
+                                       int from, int to, Object[] values) {
+        Object[] newNode = node.clone();
+        if (level == 0) {
+            for (int j = from; j < to; j++) {
+                newNode[(int) (order[j] >>> 32) & 31] = values[(int) order[j]];
+            }
+            return newNode;
+        }
+        int j = from;
+        while (j < to) {
+            int subidx = ((int) (order[j] >>> 32) >>> level) & 31;
+            int end = j + 1;
+            while (end < to &&
+                   (((int) (order[end] >>> 32) >>> level) & 31) == subidx) {
+                end++;
+            }
+            newNode[subidx] = setAllNode(level - 5, (Object[]) newNode[subidx],
+                                         order, j, end, values);
+            j = end;
+        }
+        return newNode;
+    }
+
+    public PVec setRange(int from, Object[] src) {
+        final int n = src.length;
+        if (from < 0 || n > size - offset - from)
+            throw new IndexOutOfBoundsException("From:"+from+", Length:"+n+
+                                                ", Size:"+(size - offset));
+        if (n == 0) {
+            return this;
+        }
+        from += offset;
+        final int to = from + n;
+        final int tailOff = tailOffset();
+        Object[] newRoot = root;
+        if (from < tailOff) {
+            newRoot = setRangeNode(shift, root, from, Math.min(to, tailOff) - 1,
+                                   from, src);
+        }
+        Object[] newTail = tail;
+        if (to > tailOff) {
+            int start = Math.max(from, tailOff);
+            newTail = tail.clone();
+            System.arraycopy(src, start - from, newTail, start & 31, to - start);
+        }
+        return new PVec(size, offset, shift, newRoot, newTail);
+    }
+
+    // Overwrites the indices first to last (inclusive) below node, where src[0]
+    // belongs at index srcStart. Every node on the spanned paths is cloned
+    // once.
+    private static Object[] setRangeNode(int level, Object[] node, int first,
+                                         int last, int srcStart, Object[] src) {
+        if (level == 0) {
+            Object[] leaf;
+            if ((first & 31) == 0 && (last & 31) == 31) {
+                // whole leaf is overwritten, no need to copy the old one
+                leaf = new Object[32];
+            } else {
+                leaf = node.clone();
+            }
+            System.arraycopy(src, first - srcStart, leaf, first & 31,
+                             last - first + 1);
+            return leaf;
+        }
+        Object[] newNode = node.clone();
+        int i = first;
+        while (i <= last) {
+            int childLast = Math.min(last, i | ((1 << level) - 1));
+            int subidx = (i >>> level) & 31;
+            newNode[subidx] = setRangeNode(level - 5, (Object[]) newNode[subidx],
+                                           i, childLast, srcStart, src);
+            i = childLast + 1;
+        }
+        return newNode;
     }
 
     public Object get(int i) {
         rangeCheck(i);
+        i += offset;
         if (i >= tailOffset()) {
             return tail[i & 31];
         }
@@ -77,15 +321,15 @@ public final class PVec implements Iterable {
         int ts = tailSize();
         if (ts != 32) {
             Object[] newTail = new Object[ts+1];
-            System.arraycopy(tail, 0, newTail, 0, tail.length);
+            System.arraycopy(tail, 0, newTail, 0, ts);
             newTail[ts] = val;
-            return new PVec(size+1, shift, root, newTail);
+            return new PVec(size+1, offset, shift, root, newTail);
         }
         else { // have to insert tail into root.
             Object[] newTail = new Object[]{val};
             // Special case: If old size == 32, then tail is new root
             if (size == 32) {
-                return new PVec(size+1, 0, tail, newTail);
+                return new PVec(size+1, 0, 0, tail, newTail);
             }
             // check if the root is completely filled. Must also increment
             // shift if that's the case.
@@ -96,15 +340,41 @@ public final class PVec implements Iterable {
                 newRoot = new Object[32];
                 newRoot[0] = root;
                 newRoot[1] = newPath(shift, tail);
-                return new PVec(size+1, newShift, newRoot, newTail);
+                return new PVec(size+1, offset, newShift, newRoot, newTail);
             }
             else { // still space in root
                 newRoot = pushLeaf(shift, size-1, root, tail);
-                return new PVec(size+1, shift, newRoot, newTail);
+                return new PVec(size+1, offset, shift, newRoot, newTail);
             }
         }
     }
 
+    public PVec pushAll(Object[] src, int from, int to) {
+        if (from < 0 || to > src.length || from > to)
+            throw new IndexOutOfBoundsException("From:"+from+", To:"+to+
+                                                ", Length:"+src.length);
+        int n = to - from;
+        int ts = tailSize();
+        if (ts + n <= 32) { // fits in the tail, no need to go transient
+            if (n == 0) {
+                return this;
+            }
+            Object[] newTail = new Object[ts + n];
+            System.arraycopy(tail, 0, newTail, 0, ts);
+            System.arraycopy(src, from, newTail, ts, n);
+            return new PVec(size + n, offset, shift, root, newTail);
+        }
+        return asTransient().pushAll(src, from, to).asPersistent();
+    }
+
+    public PVec pushAll(Iterable iterable) {
+        if (iterable instanceof Collection) {
+            Object[] arr = ((Collection) iterable).toArray();
+            return pushAll(arr, 0, arr.length);
+        }
+        return asTransient().pushAll(iterable).asPersistent();
+    }
+
     private static Object[] pushLeaf(int shift, int i, Object[] root, Object[] tail) {
         Object[] newRoot = root.clone();
         Object[] node = newRoot;
@@ -138,24 +408,29 @@ public final class PVec implements Iterable {
     }
 
     public PVec pop() {
-        if (size == 0) {
+        if (size == offset) {
             throw new IllegalStateException("Vector is already empty");
         }
-        if (size == 1) {
+        if (size - offset == 1) {
             return new PVec();
         }
         if (((size-1) & 31) > 0) {
-            // This one is curious: having int ts_1 = ((size-1) & 31); and using
-            // it is slower than using tail.length - 1 and newTail.length!
-            Object[] newTail = new Object[tail.length - 1];
-            System.arraycopy(tail, 0, newTail, 0, newTail.length);
-            return new PVec(size-1, shift, root, newTail);
+            // The tail may be longer than tailSize if it came from a TVec, so
+            // we cannot use tail.length here.
+            int ts_1 = (size-1) & 31;
+            Object[] newTail = new Object[ts_1];
+            System.arraycopy(tail, 0, newTail, 0, ts_1);
+            return new PVec(size-1, offset, shift, root, newTail);
         }
         final int newTrieSize = size - 33;
+        // if only hidden elements are left in the trie, get rid of it.
+        if (offset != 0 && offset >= newTrieSize) {
+            return slice(offset, size - 1);
+        }
         // special case: if new size is 32, then new root turns is null, old
         // root the tail
         if (newTrieSize == 0) {
-            return new PVec(32, 0, null, root);
+            return new PVec(32, 0, 0, null, root);
         }
         // check if we can reduce the trie's height
         if (newTrieSize == 1 << shift) { // can lower the height
@@ -173,7 +448,7 @@ public final class PVec implements Iterable {
         for (int level = lowerShift; level > 0; level -= 5) {
             node = (Object[]) node[0];
         }
-        return new PVec(size-1, lowerShift, newRoot, node);
+        return new PVec(size-1, offset, lowerShift, newRoot, node);
     }
 
     private PVec popTrie() {
@@ -198,20 +473,356 @@ public final class PVec implements Iterable {
                 node = child;
             }
         }
-        return new PVec(size-1, shift, newRoot, node);
+        return new PVec(size-1, offset, shift, newRoot, node);
+    }
+
+    public PVec popN(int n) {
+        if (n > size - offset)
+            throw new IllegalStateException("Cannot pop "+n+" elements, Size:"+
+                                            (size - offset));
+        return truncate(size - offset - n);
+    }
+
+    public PVec truncate(int newSize) {
+        if (newSize < 0 || newSize > size - offset)
+            throw new IndexOutOfBoundsException("New size:"+newSize+", Size:"+
+                                                (size - offset));
+        if (newSize == size - offset) {
+            return this;
+        }
+        if (newSize == 0) {
+            return new PVec();
+        }
+        final int newEnd = newSize + offset;
+        final int newTailOffset = (newEnd - 1) & (~31);
+        if (offset != 0 && offset >= newTailOffset) {
+            return slice(offset, newEnd);
+        }
+        final int newTs = newEnd - newTailOffset;
+        Object[] newTail = new Object[newTs];
+        System.arraycopy(arrayFor(newTailOffset), 0, newTail, 0, newTs);
+        if (newTailOffset == tailOffset()) { // trie is unchanged
+            return new PVec(newEnd, offset, shift, root, newTail);
+        }
+        if (newTailOffset == 0) {
+            return new PVec(newEnd, 0, 0, null, newTail);
+        }
+        // find the height of the new trie, and walk down to its root: It's
+        // always the leftmost node at that height.
+        int newShift = 0;
+        while ((newTailOffset >>> 5) > (1 << newShift)) {
+            newShift += 5;
+        }
+        Object[] node = root;
+        for (int level = shift; level > newShift; level -= 5) {
+            node = (Object[]) node[0];
+        }
+        Object[] newRoot = truncateNode(newShift, node, newTailOffset - 1);
+        return new PVec(newEnd, offset, newShift, newRoot, newTail);
+    }
+
+    // Cuts away everything to the right of last, copying only the nodes on the
+    // path to it. Subtrees which are kept whole are shared.
+    private static Object[] truncateNode(int level, Object[] node, int last) {
+        if (((last + 1) & ((32 << level) - 1)) == 0) {
+            return node;
+        }
+        int subidx = (last >>> level) & 31;
+        Object[] newNode = new Object[32];
+        System.arraycopy(node, 0, newNode, 0, subidx);
+        newNode[subidx] = truncateNode(level - 5, (Object[]) node[subidx], last);
+        return newNode;
+    }
+
+    public PVec subvec(int from, int to) {
+        if (from < 0 || to > size - offset || from > to)
+            throw new IndexOutOfBoundsException("From:"+from+", To:"+to+
+                                                ", Size:"+(size - offset));
+        if (from == to) {
+            return new PVec();
+        }
+        if (from == 0 && to == size - offset) {
+            return this;
+        }
+        return slice(from + offset, to + offset);
+    }
+
+    // Returns the vector containing the trie indices first until end. The new
+    // root is the lowest node containing all of them, which keeps the height
+    // as small as possible. Only the nodes on the two edges of the range are
+    // copied, everything in between is shared.
+    private PVec slice(int first, int end) {
+        final int newTailOffset = (end - 1) & (~31);
+        Object[] leaf = arrayFor(newTailOffset);
+        if (first >= newTailOffset) { // everything fits in the tail
+            Object[] newTail = new Object[end - first];
+            System.arraycopy(leaf, first - newTailOffset, newTail, 0,
+                             newTail.length);
+            return new PVec(newTail.length, 0, 0, null, newTail);
+        }
+        Object[] newTail = new Object[end - newTailOffset];
+        System.arraycopy(leaf, 0, newTail, 0, newTail.length);
+        final int last = newTailOffset - 1;
+        // the highest bit where first and last differ tells us the level of
+        // the lowest node containing both.
+        int newShift = 0;
+        int diff = first ^ last;
+        if (diff != 0) {
+            newShift = ((31 - Integer.numberOfLeadingZeros(diff)) / 5) * 5;
+        }
+        Object[] node = root;
+        for (int level = shift; level > newShift; level -= 5) {
+            node = (Object[]) node[(first >>> level) & 31];
+        }
+        final int base = first & ~((32 << newShift) - 1);
+        Object[] newRoot = sliceNode(newShift, node, first, last);
+        return new PVec(end - base, first - base, newShift, newRoot, newTail);
+    }
+
+    // Keeps only the indices first to last (inclusive) below node.
+    private static Object[] sliceNode(int level, Object[] node, int first,
+                                      int last) {
+        if ((first & ((32 << level) - 1)) == 0 &&
+            ((last + 1) & ((32 << level) - 1)) == 0) {
+            return node;
+        }
+        Object[] newNode = new Object[32];
+        if (level == 0) {
+            System.arraycopy(node, first & 31, newNode, first & 31,
+                             last - first + 1);
+            return newNode;
+        }
+        int lo = (first >>> level) & 31;
+        int hi = (last >>> level) & 31;
+        if (lo == hi) {
+            newNode[lo] = sliceNode(level - 5, (Object[]) node[lo], first, last);
+            return newNode;
+        }
+        newNode[lo] = sliceNode(level - 5, (Object[]) node[lo], first,
+                                first | ((1 << level) - 1));
+        System.arraycopy(node, lo + 1, newNode, lo + 1, hi - lo - 1);
+        newNode[hi] = sliceNode(level - 5, (Object[]) node[hi],
+                                last & ~((1 << level) - 1), last);
+        return newNode;
+    }
+
+    private Object[] arrayFor(int i) {
+        if (i >= tailOffset()) {
+            return tail;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= 5) {
+            node = (Object[]) node[(i >>> level) & 31];
+        }
+        return node;
     }
 
     public int size() {
-        return size;
+        return size - offset;
     }
 
     public PVec map(Fun f) {
-        return null;
+        // walk the trie in index order first, then the tail, so f sees the
+        // elements in the same order as iteration would.
+        Object[] newRoot = null;
+        if (size > 32) {
+            newRoot = mapNode(shift, root, offset, f);
+        }
+        int ts = tailSize();
+        Object[] newTail = new Object[ts];
+        for (int i = 0; i < ts; i++) {
+            newTail[i] = f.update(tail[i]);
+        }
+        return new PVec(size, offset, shift, newRoot, newTail);
+    }
+
+    public PVec parallelMap(Fun f) {
+        return parallelMap(f, ForkJoinPool.commonPool());
+    }
+
+    // f is called concurrently and in no particular order, so it should not
+    // have side effects.
+    public PVec parallelMap(Fun f, ForkJoinPool pool) {
+        Object[] newRoot = null;
+        if (size > 32) {
+            newRoot = pool.invoke(new MapTask(shift, root, offset, f, shift));
+        }
+        int ts = tailSize();
+        Object[] newTail = new Object[ts];
+        for (int i = 0; i < ts; i++) {
+            newTail[i] = f.update(tail[i]);
+        }
+        return new PVec(size, offset, shift, newRoot, newTail);
+    }
+
+    public Object reduce(Object init, Reducer f) {
+        Object acc = init;
+        if (size > 32) {
+            acc = reduceNode(shift, root, offset, acc, f);
+        }
+        int ts = tailSize();
+        for (int i = 0; i < ts; i++) {
+            acc = f.reduce(acc, tail[i]);
+        }
+        return acc;
+    }
+
+    public Object parallelReduce(Object identity, Reducer f) {
+        return parallelReduce(identity, f, ForkJoinPool.commonPool());
+    }
+
+    // Every subtree is reduced from identity, and the partial results are
+    // combined left to right with f. identity must therefore be an identity
+    // for f, and f must be associative.
+    public Object parallelReduce(Object identity, Reducer f, ForkJoinPool pool) {
+        Object acc = identity;
+        if (size > 32) {
+            acc = pool.invoke(new ReduceTask(shift, root, offset, identity, f,
+                                             shift));
+        }
+        int ts = tailSize();
+        for (int i = 0; i < ts; i++) {
+            acc = f.reduce(acc, tail[i]);
+        }
+        return acc;
+    }
+
+    // from is the first index to visit, everything to the left of it is
+    // hidden. Only the leftmost path has to care about it.
+    private static Object reduceNode(int level, Object[] node, int from,
+                                     Object acc, Reducer f) {
+        if (level == 0) {
+            for (int i = from & 31; i < 32; i++) {
+                acc = f.reduce(acc, node[i]);
+            }
+        }
+        else {
+            int start = (from >>> level) & 31;
+            for (int i = start; i < 32; i++) {
+                Object[] child = (Object[]) node[i];
+                if (child == null) {
+                    break;
+                }
+                acc = reduceNode(level - 5, child, i == start ? from : 0, acc, f);
+            }
+        }
+        return acc;
+    }
+
+    // Only the root and its children fork, and only if the subtrees below them
+    // are at least 1024 elements large. Anything below is done sequentially.
+    private static boolean forks(int level, int shift) {
+        return level >= 10 && level >= shift - 5;
+    }
+
+    private static final class MapTask extends RecursiveTask<Object[]> {
+        private final int level;
+        private final Object[] node;
+        private final int from;
+        private final Fun f;
+        private final int shift;
+
+        MapTask(int level, Object[] node, int from, Fun f, int shift) {
+            this.level = level;
+            this.node = node;
+            this.from = from;
+            this.f = f;
+            this.shift = shift;
+        }
+
+        protected Object[] compute() {
+            if (!forks(level, shift)) {
+                return mapNode(level, node, from, f);
+            }
+            final int start = (from >>> level) & 31;
+            MapTask[] tasks = new MapTask[32];
+            int n = start;
+            while (n < 32 && node[n] != null) {
+                tasks[n] = new MapTask(level - 5, (Object[]) node[n],
+                                       n == start ? from : 0, f, shift);
+                n++;
+            }
+            for (int i = start + 1; i < n; i++) {
+                tasks[i].fork();
+            }
+            Object[] newNode = new Object[32];
+            newNode[start] = tasks[start].compute();
+            for (int i = start + 1; i < n; i++) {
+                newNode[i] = tasks[i].join();
+            }
+            return newNode;
+        }
+    }
+
+    private static final class ReduceTask extends RecursiveTask<Object> {
+        private final int level;
+        private final Object[] node;
+        private final int from;
+        private final Object identity;
+        private final Reducer f;
+        private final int shift;
+
+        ReduceTask(int level, Object[] node, int from, Object identity,
+                   Reducer f, int shift) {
+            this.level = level;
+            this.node = node;
+            this.from = from;
+            this.identity = identity;
+            this.f = f;
+            this.shift = shift;
+        }
+
+        protected Object compute() {
+            if (!forks(level, shift)) {
+                return reduceNode(level, node, from, identity, f);
+            }
+            final int start = (from >>> level) & 31;
+            ReduceTask[] tasks = new ReduceTask[32];
+            int n = start;
+            while (n < 32 && node[n] != null) {
+                tasks[n] = new ReduceTask(level - 5, (Object[]) node[n],
+                                          n == start ? from : 0, identity, f,
+                                          shift);
+                n++;
+            }
+            for (int i = start + 1; i < n; i++) {
+                tasks[i].fork();
+            }
+            Object acc = tasks[start].compute();
+            for (int i = start + 1; i < n; i++) {
+                acc = f.reduce(acc, tasks[i].join());
+            }
+            return acc;
+        }
+    }
+
+    // Hidden elements and children to the left of from are left as null.
+    private static Object[] mapNode(int level, Object[] node, int from, Fun f) {
+        Object[] newNode = new Object[32];
+        if (level == 0) { // leaves in the trie are always full
+            for (int i = from & 31; i < 32; i++) {
+                newNode[i] = f.update(node[i]);
+            }
+        }
+        else {
+            int start = (from >>> level) & 31;
+            for (int i = start; i < 32; i++) {
+                Object[] child = (Object[]) node[i];
+                // children are packed to the left, so the first null is the
+                // end of this node.
+                if (child == null) {
+                    break;
+                }
+                newNode[i] = mapNode(level - 5, child, i == start ? from : 0, f);
+            }
+        }
+        return newNode;
     }
 
     private void rangeCheck(int index) {
-        if (index >= size)
-            throw new IndexOutOfBoundsException("Index:"+index+", Size:"+size);
+        if (index < 0 || index >= size - offset)
+            throw new IndexOutOfBoundsException("Index:"+index+", Size:"+
+                                                (size - offset));
     }
 
     private int tailOffset() {
@@ -225,11 +836,33 @@ public final class PVec implements Iterable {
             return ((size-1) & 31)+1;
     }
 
+    public PVecCursor cursor() {
+        return new PVecCursor(size, offset, shift, root, tail);
+    }
+
     public TVec asTransient() {
-        return new TVec(size, shift, root, tail);
+        return new TVec(size, offset, shift, root, tail, false);
+    }
+
+    // A transient only the calling thread may use, see TVec.
+    public TVec asConfinedTransient() {
+        return new TVec(size, offset, shift, root, tail, true);
     }
 
     public Iterator iterator() {
-        return new VecIter(size, shift, root, tail);
+        return new VecIter(size, shift, root, tail, offset);
+    }
+
+    public Spliterator<Object> spliterator() {
+        return new VecSpliterator(shift, root, tail, tailOffset(), offset,
+                                  size);
+    }
+
+    public Stream<Object> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Stream<Object> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
     }
 }
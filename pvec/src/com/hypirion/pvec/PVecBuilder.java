@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2014 Jean Niklas L'orange. All rights reserved.
+ *
+ * The use and distribution terms for this software are covered by the
+ * Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ * which can be found in the file LICENSE at the root of this distribution.
+ *
+ * By using this software in any fashion, you are agreeing to be bound by
+ * the terms of this license.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.hypirion.pvec;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Builds a PVec from several threads at once. Each thread adds elements to
+ * its own Part, which fills a leaf of its own. When the leaf is full, the
+ * part claims the next free leaf index in the builder and stores the leaf
+ * there. build then assembles the trie directly from the stored leaves, so
+ * the elements in them are never copied. Only the leaves the parts have not
+ * filled yet are copied, and packed together at the end of the vector.
+ *
+ * The elements of a part keep their order, but parts are interleaved one
+ * leaf at a time, in the order the leaves were filled. build must only be
+ * called when all parts are done, after the threads using them have been
+ * joined or otherwise synchronized with. Parts are not thread safe.
+ */
+public final class PVecBuilder {
+    // Leaves are stored in chunks of 4096, which are made when first needed.
+    // 8192 chunks are enough for 2^30 elements.
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK = 1 << CHUNK_BITS;
+    private static final int MAX_LEAVES = 1 << 25;
+
+    private final AtomicReferenceArray<Object[]> chunks;
+    private final AtomicInteger leafCount;
+    private final ConcurrentLinkedQueue<Part> parts;
+
+    public PVecBuilder() {
+        chunks = new AtomicReferenceArray<Object[]>(MAX_LEAVES >>> CHUNK_BITS);
+        leafCount = new AtomicInteger();
+        parts = new ConcurrentLinkedQueue<Part>();
+    }
+
+    // Returns a new part. Should be called once per thread.
+    public Part part() {
+        Part p = new Part();
+        parts.add(p);
+        return p;
+    }
+
+    public final class Part {
+        private Object[] leaf;
+        private int n;
+
+        Part() {
+            leaf = new Object[32];
+        }
+
+        public Part add(Object val) {
+            leaf[n++] = val;
+            if (n == 32) {
+                store(leaf);
+                leaf = new Object[32];
+                n = 0;
+            }
+            return this;
+        }
+
+        public Part addAll(Object[] src, int from, int to) {
+            if (from < 0 || to > src.length || from > to)
+                throw new IndexOutOfBoundsException("From:"+from+", To:"+to+
+                                                    ", Length:"+src.length);
+            while (from < to) {
+                int k = Math.min(32 - n, to - from);
+                System.arraycopy(src, from, leaf, n, k);
+                n += k;
+                from += k;
+                if (n == 32) {
+                    store(leaf);
+                    leaf = new Object[32];
+                    n = 0;
+                }
+            }
+            return this;
+        }
+    }
+
+    private void store(Object[] leaf) {
+        int i = leafCount.getAndIncrement();
+        if (i >= MAX_LEAVES) {
+            leafCount.decrementAndGet();
+            throw new IllegalStateException("Vector is full");
+        }
+        int c = i >>> CHUNK_BITS;
+        Object[] chunk = chunks.get(c);
+        if (chunk == null) {
+            chunks.compareAndSet(c, null, new Object[CHUNK]);
+            chunk = chunks.get(c);
+        }
+        chunk[i & (CHUNK - 1)] = leaf;
+    }
+
+    public PVec build() {
+        int stored = leafCount.get();
+        int rest = 0;
+        for (Part p : parts) {
+            rest += p.n;
+        }
+        int size = (stored << 5) + rest;
+        if (size == 0) {
+            return new PVec();
+        }
+        // the leaves the parts are still filling go into new leaves at the
+        // end, and the last of those is the tail.
+        Object[] nodes = new Object[stored + ((rest + 31) >>> 5)];
+        for (int i = 0; i < stored; i++) {
+            nodes[i] = chunks.get(i >>> CHUNK_BITS)[i & (CHUNK - 1)];
+        }
+        int count = stored;
+        Object[] leaf = new Object[32];
+        int k = 0;
+        for (Part p : parts) {
+            for (int j = 0; j < p.n; ) {
+                int len = Math.min(32 - k, p.n - j);
+                System.arraycopy(p.leaf, j, leaf, k, len);
+                j += len;
+                k += len;
+                if (k == 32) {
+                    nodes[count++] = leaf;
+                    leaf = new Object[32];
+                    k = 0;
+                }
+            }
+        }
+        Object[] tail;
+        if (k == 0) { // the last leaf is full, and becomes the tail as is
+            tail = (Object[]) nodes[--count];
+        }
+        else {
+            tail = new Object[k];
+            System.arraycopy(leaf, 0, tail, 0, k);
+        }
+        return PVec.fromLeaves(size, nodes, count, tail);
+    }
+}
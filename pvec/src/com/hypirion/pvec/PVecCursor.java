@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2014 Jean Niklas L'orange. All rights reserved.
+ *
+ * The use and distribution terms for this software are covered by the
+ * Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ * which can be found in the file LICENSE at the root of this distribution.
+ *
+ * By using this software in any fashion, you are agreeing to be bound by
+ * the terms of this license.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.hypirion.pvec;
+
+/**
+ * A cursor over a PVec which keeps the last leaf it visited, along with the
+ * path of nodes down to it. A lookup in another leaf only walks down from the
+ * lowest node the two leaves have in common, so mostly sequential or local
+ * access is amortized O(1).
+ *
+ * set writes into copies of the path which the cursor owns, so repeated sets
+ * near each other copy nothing. vec returns the updated vector, after which
+ * the nodes are shared and will be copied again on the next set. Cursors are
+ * not thread safe.
+ */
+public final class PVecCursor {
+    private final int size;
+    private final int offset;
+    private final int shift;
+    private final int tailOffset;
+    private Object[] root;
+    private Object[] tail;
+
+    // stack[k] is the node at level 5*(k+1) on the path to leaf, so the root
+    // is at the top. focus is the index of the first element in leaf, or -1 if
+    // we have no leaf yet.
+    private final Object[][] stack;
+    private Object[] leaf;
+    private int focus;
+
+    // All nodes on the path at this level or above are owned by us, and can
+    // be written to. The leaf is at level 0.
+    private int ownedLevel;
+    private boolean tailOwned;
+
+    private static final int NOT_OWNED = Integer.MAX_VALUE;
+
+    PVecCursor(int size, int offset, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.offset = offset;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+        tailOffset = (size - 1) & (~31);
+        stack = new Object[shift/5][];
+        focus = -1;
+        ownedLevel = NOT_OWNED;
+    }
+
+    public Object get(int i) {
+        rangeCheck(i);
+        i += offset;
+        if (i >= tailOffset) {
+            return tail[i & 31];
+        }
+        if ((i & ~31) != focus) {
+            focusOn(i);
+        }
+        return leaf[i & 31];
+    }
+
+    public PVecCursor set(int i, Object val) {
+        rangeCheck(i);
+        i += offset;
+        if (i >= tailOffset) {
+            if (!tailOwned) {
+                tail = tail.clone();
+                tailOwned = true;
+            }
+            tail[i & 31] = val;
+            return this;
+        }
+        if ((i & ~31) != focus) {
+            focusOn(i);
+        }
+        if (ownedLevel != 0) {
+            ownPath(i);
+        }
+        leaf[i & 31] = val;
+        return this;
+    }
+
+    // Returns the vector with all sets done so far.
+    public PVec vec() {
+        ownedLevel = NOT_OWNED;
+        tailOwned = false;
+        return new PVec(size, offset, shift, root, tail);
+    }
+
+    public int size() {
+        return size - offset;
+    }
+
+    private void focusOn(int i) {
+        int level = shift;
+        if (focus >= 0) {
+            // find the lowest node containing both the old and the new leaf.
+            // Nodes below it are read from the vector, and we cannot tell
+            // whether we own them.
+            int diff = i ^ focus;
+            level = 5;
+            while ((diff >>> (level + 5)) != 0) {
+                level += 5;
+            }
+            ownedLevel = Math.max(ownedLevel, level);
+        }
+        if (shift == 0) { // the root is the only leaf
+            leaf = root;
+        }
+        else {
+            if (level == shift) {
+                stack[stack.length - 1] = root;
+            }
+            for (; level > 5; level -= 5) {
+                stack[level/5 - 2] = (Object[]) stack[level/5 - 1][(i >>> level) & 31];
+            }
+            leaf = (Object[]) stack[0][(i >>> 5) & 31];
+        }
+        focus = i & ~31;
+    }
+
+    // Copies the nodes on the path to i which we do not own yet, from the leaf
+    // and up, and links them into their parents.
+    private void ownPath(int i) {
+        leaf = leaf.clone();
+        Object[] child = leaf;
+        int level = 5;
+        for (; level <= shift && level < ownedLevel; level += 5) {
+            Object[] node = stack[level/5 - 1].clone();
+            node[(i >>> level) & 31] = child;
+            stack[level/5 - 1] = node;
+            child = node;
+        }
+        if (level > shift) { // copied the root as well
+            root = child;
+        }
+        else {
+            stack[level/5 - 1][(i >>> level) & 31] = child;
+        }
+        ownedLevel = 0;
+    }
+
+    private void rangeCheck(int index) {
+        if (index < 0 || index >= size - offset)
+            throw new IndexOutOfBoundsException("Index:"+index+", Size:"+
+                                                (size - offset));
+    }
+}
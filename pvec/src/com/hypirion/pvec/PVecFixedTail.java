@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2014 Jean Niklas L'orange. All rights reserved.
+ *
+ * The use and distribution terms for this software are covered by the
+ * Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ * which can be found in the file LICENSE at the root of this distribution.
+ *
+ * By using this software in any fashion, you are agreeing to be bound by
+ * the terms of this license.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.hypirion.pvec;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PVec where the tail is always allocated with room for 32 elements, and only
+ * size tells how many of them are in use. A full tail goes into the trie as
+ * is, and a leaf taken out of the trie is used as the tail as is.
+ *
+ * All versions sharing a tail also share a count of how many of its slots
+ * have been claimed. A version whose size ends where the claimed slots end is
+ * the newest one made from the tail, and push claims the next slot with a CAS
+ * and writes into the tail in place. Older versions fail the CAS and copy
+ * their part of the tail instead. Appending to the newest version is
+ * therefore copy-free, and safe from any number of threads. pop shares the
+ * tail, so slots past the end of a tail may hold elements which belong to
+ * other versions.
+ */
+public final class PVecFixedTail implements Iterable {
+    private final int size;
+    private final int shift;
+    private final Object[] tail;
+    private final Object[] root;
+    private final AtomicInteger claimed;
+
+    private static final Object[] EMPTY_TAIL = new Object[32];
+    // Used for tails no one may append to in place. It's never changed, as
+    // nobody tries to claim the 33rd slot.
+    private static final AtomicInteger FULL = new AtomicInteger(32);
+
+    public PVecFixedTail() {
+        size = 0;
+        shift = 0;
+        tail = EMPTY_TAIL;
+        root = null;
+        claimed = FULL;
+    }
+
+    PVecFixedTail(int size, int shift, Object[] root, Object[] tail,
+                  AtomicInteger claimed) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+        this.claimed = claimed;
+    }
+
+    public static PVecFixedTail fromArray(Object[] arr) {
+        int n = arr.length;
+        if (n == 0) {
+            return new PVecFixedTail();
+        }
+        int ts = ((n-1) & 31)+1;
+        int trieSize = n - ts;
+        Object[] newTail = new Object[32];
+        System.arraycopy(arr, trieSize, newTail, 0, ts);
+        int count = trieSize >>> 5;
+        if (count == 0) {
+            return new PVecFixedTail(n, 0, null, newTail, new AtomicInteger(ts));
+        }
+        Object[] nodes = new Object[count];
+        for (int i = 0; i < count; i++) {
+            Object[] leaf = new Object[32];
+            System.arraycopy(arr, i << 5, leaf, 0, 32);
+            nodes[i] = leaf;
+        }
+        int shift = 0;
+        while (count > 1) {
+            int parents = (count + 31) >>> 5;
+            for (int i = 0; i < parents; i++) {
+                Object[] parent = new Object[32];
+                int len = Math.min(32, count - (i << 5));
+                System.arraycopy(nodes, i << 5, parent, 0, len);
+                nodes[i] = parent;
+            }
+            count = parents;
+            shift += 5;
+        }
+        return new PVecFixedTail(n, shift, (Object[]) nodes[0], newTail,
+                                 new AtomicInteger(ts));
+    }
+
+    public PVecFixedTail set(int i, Object val) {
+        rangeCheck(i);
+        if (i >= tailOffset()) {
+            int ts = tailSize();
+            Object[] newTail = new Object[32];
+            System.arraycopy(tail, 0, newTail, 0, ts);
+            newTail[i & 31] = val;
+            return new PVecFixedTail(size, shift, root, newTail,
+                                     new AtomicInteger(ts));
+        }
+        else {
+            Object[] newRoot = root.clone();
+            Object[] node = newRoot;
+            for (int level = shift; level > 0; level -= 5) {
+                int subidx = (i >>> level) & 31;
+                Object[] child = (Object[]) node[subidx];
+                child = child.clone();
+                node[subidx] = child;
+                node = child;
+            }
+            node[i & 31] = val;
+            return new PVecFixedTail(size, shift, newRoot, tail, claimed);
+        }
+    }
+
+    public Object get(int i) {
+        rangeCheck(i);
+        if (i >= tailOffset()) {
+            return tail[i & 31];
+        }
+        else {
+            Object[] node = root;
+            for (int level = shift; level > 0; level -= 5) {
+                node = (Object[]) node[(i >>> level) & 31];
+            }
+            return node[i & 31];
+        }
+    }
+
+    public PVecFixedTail push(Object val) {
+        int ts = tailSize();
+        if (ts != 32) {
+            // the plain read first spares older versions a CAS which is bound
+            // to fail.
+            if (claimed.get() == ts && claimed.compareAndSet(ts, ts+1)) {
+                // the slot is ours now, and no other version will read it.
+                tail[ts] = val;
+                return new PVecFixedTail(size+1, shift, root, tail, claimed);
+            }
+            Object[] newTail = new Object[32];
+            System.arraycopy(tail, 0, newTail, 0, ts);
+            newTail[ts] = val;
+            return new PVecFixedTail(size+1, shift, root, newTail,
+                                     new AtomicInteger(ts+1));
+        }
+        else { // have to insert tail into root.
+            Object[] newTail = new Object[32];
+            newTail[0] = val;
+            AtomicInteger newClaimed = new AtomicInteger(1);
+            // Special case: If old size == 32, then tail is new root
+            if (size == 32) {
+                return new PVecFixedTail(size+1, 0, tail, newTail, newClaimed);
+            }
+            // check if the root is completely filled. Must also increment
+            // shift if that's the case.
+            if ((size >>> 5) > (1 << shift)) {
+                Object[] newRoot = new Object[32];
+                newRoot[0] = root;
+                newRoot[1] = newPath(shift, tail);
+                return new PVecFixedTail(size+1, shift+5, newRoot, newTail,
+                                         newClaimed);
+            }
+            else { // still space in root
+                Object[] newRoot = pushLeaf(shift, size-1, root, tail);
+                return new PVecFixedTail(size+1, shift, newRoot, newTail,
+                                         newClaimed);
+            }
+        }
+    }
+
+    private static Object[] pushLeaf(int shift, int i, Object[] root, Object[] tail) {
+        Object[] newRoot = root.clone();
+        Object[] node = newRoot;
+        for (int level = shift; level > 5; level -= 5) {
+            int subidx = (i >>> level) & 31;
+            Object[] child = (Object[]) node[subidx];
+            if (child == null) {
+                node[subidx] = newPath(level - 5, tail);
+                return newRoot;
+            }
+            child = child.clone();
+            node[subidx] = child;
+            node = child;
+        }
+        node[(i >>> 5) & 31] = tail;
+        return newRoot;
+    }
+
+    private static Object[] newPath(int levels, Object[] tail) {
+        Object[] topNode = tail;
+        for (int level = levels; level > 0; level -= 5) {
+            Object[] newTop = new Object[32];
+            newTop[0] = topNode;
+            topNode = newTop;
+        }
+        return topNode;
+    }
+
+    public PVecFixedTail pop() {
+        if (size == 0) {
+            throw new IllegalStateException("Vector is already empty");
+        }
+        if (size == 1) {
+            return new PVecFixedTail();
+        }
+        int ts = tailSize();
+        if (ts > 1) {
+            // the popped element stays in the tail until a newer version
+            // drops it. Pushing to the result copies, as the slot is claimed.
+            return new PVecFixedTail(size-1, shift, root, tail, claimed);
+        }
+        final int newTrieSize = size - 33;
+        // special case: if new size is 32, then the root is the new tail
+        if (newTrieSize == 0) {
+            return new PVecFixedTail(32, 0, null, root, FULL);
+        }
+        // check if we can reduce the trie's height
+        if (newTrieSize == 1 << shift) {
+            Object[] node = (Object[]) root[1];
+            for (int level = shift - 5; level > 0; level -= 5) {
+                node = (Object[]) node[0];
+            }
+            return new PVecFixedTail(size-1, shift-5, (Object[]) root[0], node,
+                                     FULL);
+        }
+        // diverges contain information on when the path diverges.
+        int diverges = newTrieSize ^ (newTrieSize - 1);
+        boolean hasDiverged = false;
+        Object[] newRoot = root.clone();
+        Object[] node = newRoot;
+        for (int level = shift; level > 0; level -= 5) {
+            int subidx = (newTrieSize >>> level) & 31;
+            Object[] child = (Object[]) node[subidx];
+            if (hasDiverged) {
+                node = child;
+            } else if ((diverges >>> level) != 0) {
+                hasDiverged = true;
+                node[subidx] = null;
+                node = child;
+            } else {
+                child = child.clone();
+                node[subidx] = child;
+                node = child;
+            }
+        }
+        // leaves in the trie are full, so they can be used as the tail as is.
+        return new PVecFixedTail(size-1, shift, newRoot, node, FULL);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void rangeCheck(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index:"+index+", Size:"+size);
+    }
+
+    private int tailOffset() {
+        return (size - 1) & (~31);
+    }
+
+    private int tailSize() {
+        if (size == 0)
+            return 0;
+        else
+            return ((size-1) & 31)+1;
+    }
+
+    // PVec only reads the first tailSize elements of the tail, so this shares
+    // everything.
+    public PVec asPVec() {
+        return new PVec(size, 0, shift, root, tail);
+    }
+
+    public TVec asTransient() {
+        return new TVec(size, 0, shift, root, tail, false);
+    }
+
+    public Iterator iterator() {
+        return new VecIter(size, shift, root, tail, 0);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2014 Jean Niklas L'orange. All rights reserved.
+ *
+ * The use and distribution terms for this software are covered by the
+ * Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ * which can be found in the file LICENSE at the root of this distribution.
+ *
+ * By using this software in any fashion, you are agreeing to be bound by
+ * the terms of this license.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.hypirion.pvec;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lets a single writer edit a vector through a transient, and publishes a
+ * PVec snapshot of it to any number of readers every maxOps operations, or
+ * when maxMicros have passed since the last publish. Readers call snapshot,
+ * which never waits.
+ *
+ * A publish is O(1): the transient is turned persistent, and the writer makes
+ * a new transient from the snapshot on its next write. That write copies the
+ * tail and the path it changes only, like any first write to a transient.
+ * There's no timer thread, so time is only checked on every 16th write. A
+ * writer which may go idle should call publishIfDue or publish on its own.
+ *
+ * All methods except snapshot must be called from the same thread.
+ */
+public final class PVecPublisher {
+    private final AtomicReference<PVec> published;
+    private final int maxOps;
+    private final long maxNanos;
+
+    // null if nothing has been written since the last publish.
+    private TVec t;
+    private int ops;
+    private long lastPublish;
+
+    public PVecPublisher(PVec initial, int maxOps, long maxMicros) {
+        if (maxOps < 1)
+            throw new IllegalArgumentException("Max ops:"+maxOps);
+        published = new AtomicReference<PVec>(initial);
+        this.maxOps = maxOps;
+        this.maxNanos = TimeUnit.MICROSECONDS.toNanos(maxMicros);
+        lastPublish = System.nanoTime();
+    }
+
+    // The latest published vector.
+    public PVec snapshot() {
+        return published.get();
+    }
+
+    public PVecPublisher push(Object val) {
+        writable().push(val);
+        return written();
+    }
+
+    public PVecPublisher set(int i, Object val) {
+        writable().set(i, val);
+        return written();
+    }
+
+    public PVecPublisher update(int i, Fun f) {
+        writable().update(i, f);
+        return written();
+    }
+
+    public PVecPublisher pop() {
+        writable().pop();
+        return written();
+    }
+
+    // The size of the vector the writer sees, which may be ahead of the
+    // snapshot.
+    public int size() {
+        return t != null ? t.size() : published.get().size();
+    }
+
+    public void publish() {
+        if (t != null) {
+            // lazySet is a release store: readers who see the new snapshot
+            // see all writes made to it, without a full fence for the writer.
+            published.lazySet(t.asPersistent());
+            t = null;
+        }
+        ops = 0;
+        lastPublish = System.nanoTime();
+    }
+
+    public void publishIfDue() {
+        if (t != null && System.nanoTime() - lastPublish >= maxNanos) {
+            publish();
+        }
+    }
+
+    private TVec writable() {
+        if (t == null) {
+            t = published.get().asConfinedTransient();
+        }
+        return t;
+    }
+
+    // Reading the clock may cost more than the write itself, so it's only
+    // read on every 16th write.
+    private PVecPublisher written() {
+        if (++ops >= maxOps ||
+            ((ops & 15) == 0 && System.nanoTime() - lastPublish >= maxNanos)) {
+            publish();
+        }
+        return this;
+    }
+}
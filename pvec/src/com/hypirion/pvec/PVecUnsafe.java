@@ -14,6 +14,8 @@
 package com.hypirion.pvec;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
 import sun.misc.Unsafe;
 
 public final class PVecUnsafe {
@@ -63,6 +65,84 @@ public final class PVecUnsafe {
         this.root = root;
     }
 
+    public static PVecUnsafe fromArray(Object[] arr) {
+        return fromArray(arr, 0, arr.length);
+    }
+
+    // See PVec.fromArray. Full nodes and tails are 33 elements long here as
+    // well.
+    public static PVecUnsafe fromArray(Object[] arr, int from, int to) {
+        if (from < 0 || to > arr.length || from > to)
+            throw new IndexOutOfBoundsException("From:"+from+", To:"+to+
+                                                ", Length:"+arr.length);
+        int n = to - from;
+        if (n == 0) {
+            return new PVecUnsafe();
+        }
+        int ts = ((n-1) & 31)+1;
+        int trieSize = n - ts;
+        Object[] newTail = new Object[ts == 32 ? 33 : ts];
+        System.arraycopy(arr, from + trieSize, newTail, 0, ts);
+        Object[] leaves = new Object[trieSize >>> 5];
+        for (int i = 0; i < leaves.length; i++) {
+            Object[] leaf = new Object[33];
+            System.arraycopy(arr, from + (i << 5), leaf, 0, 32);
+            leaves[i] = leaf;
+        }
+        return fromLeaves(n, leaves, leaves.length, newTail);
+    }
+
+    public static PVecUnsafe fromCollection(Collection coll) {
+        return fromArray(coll.toArray());
+    }
+
+    public static PVecUnsafe fromIterable(Iterable iterable) {
+        if (iterable instanceof Collection) {
+            return fromCollection((Collection) iterable);
+        }
+        ArrayList<Object[]> leaves = new ArrayList<Object[]>();
+        Object[] leaf = new Object[33];
+        int n = 0;
+        for (Object o : iterable) {
+            if (n != 0 && (n & 31) == 0) {
+                leaves.add(leaf);
+                leaf = new Object[33];
+            }
+            arrSet(leaf, n & 31, o);
+            n++;
+        }
+        if (n == 0) {
+            return new PVecUnsafe();
+        }
+        int ts = ((n-1) & 31)+1;
+        Object[] newTail = leaf;
+        if (ts != 32) {
+            newTail = new Object[ts];
+            System.arraycopy(leaf, 0, newTail, 0, ts);
+        }
+        return fromLeaves(n, leaves.toArray(), leaves.size(), newTail);
+    }
+
+    private static PVecUnsafe fromLeaves(int size, Object[] nodes, int count,
+                                         Object[] tail) {
+        if (count == 0) {
+            return new PVecUnsafe(size, 0, null, tail);
+        }
+        int shift = 0;
+        while (count > 1) {
+            int parents = (count + 31) >>> 5;
+            for (int i = 0; i < parents; i++) {
+                Object[] parent = new Object[33];
+                int len = Math.min(32, count - (i << 5));
+                System.arraycopy(nodes, i << 5, parent, 0, len);
+                nodes[i] = parent;
+            }
+            count = parents;
+            shift += 5;
+        }
+        return new PVecUnsafe(size, shift, (Object[]) nodes[0], tail);
+    }
+
     public PVecUnsafe set(int i, Object val) {
         rangeCheck(i);
         if (i >= tailOffset()) {
@@ -230,7 +310,36 @@ public final class PVecUnsafe {
     }
 
     public PVecUnsafe map(Fun f) {
-        return null;
+        Object[] newRoot = null;
+        if (size > 32) {
+            newRoot = mapNode(shift, root, f);
+        }
+        int ts = tailSize();
+        // keep the tail length, a full tail is 33 elements long.
+        Object[] newTail = new Object[tail.length];
+        for (int i = 0; i < ts; i++) {
+            arrSet(newTail, i, f.update(arrGet(tail, i)));
+        }
+        return new PVecUnsafe(size, shift, newRoot, newTail);
+    }
+
+    private static Object[] mapNode(int level, Object[] node, Fun f) {
+        Object[] newNode = new Object[33];
+        if (level == 0) {
+            for (int i = 0; i < 32; i++) {
+                arrSet(newNode, i, f.update(arrGet(node, i)));
+            }
+        }
+        else {
+            for (int i = 0; i < 32; i++) {
+                Object[] child = (Object[]) arrGet(node, i);
+                if (child == null) {
+                    break;
+                }
+                arrSet(newNode, i, mapNode(level - 5, child, f));
+            }
+        }
+        return newNode;
     }
 
     private void rangeCheck(int index) {
@@ -250,6 +359,10 @@ public final class PVecUnsafe {
     }
 
     public TVecUnsafe asTransient() {
-        return new TVecUnsafe(size, shift, root, tail);
+        return new TVecUnsafe(size, shift, root, tail, false);
+    }
+
+    public TVecUnsafe asConfinedTransient() {
+        return new TVecUnsafe(size, shift, root, tail, true);
     }
 }
@@ -0,0 +1,564 @@
+/*
+ * Copyright (c) 2014 Jean Niklas L'orange. All rights reserved.
+ *
+ * The use and distribution terms for this software are covered by the
+ * Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ * which can be found in the file LICENSE at the root of this distribution.
+ *
+ * By using this software in any fashion, you are agreeing to be bound by
+ * the terms of this license.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.hypirion.pvec;
+
+/* A relaxed radix balanced (RRB) vector. It's the same 32-way trie as PVec,
+   except that nodes may contain fewer than 32 children or elements anywhere in
+   the trie, not only on the rightmost path. That's what makes concatenation,
+   splitting and insertion O(log n).
+
+   - Leaves are Object arrays of exactly the number of elements they contain
+     (1 to 32).
+   - An internal node with k children is an Object array of length k+1. The
+     last slot contains an int[] with the cumulative sizes of the children, or
+     null if the node is regular: All children except the last one are full.
+     Lookups in regular nodes use the plain radix path, so a trie which is
+     fully balanced is searched exactly like a PVec.
+   - There is no tail, so push copies the rightmost path.
+*/
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public final class RRBVec implements Iterable {
+    private final int size;
+    private final int shift;
+    private final Object[] root;
+
+    private static final Object[] EMPTY_LEAF = new Object[0];
+
+    // Number of extra nodes we accept over the optimal number of nodes when
+    // concatenating. Higher numbers give faster concatenation, but slower
+    // lookups.
+    private static final int EXTRAS = 2;
+
+    public RRBVec() {
+        size = 0;
+        shift = 0;
+        root = EMPTY_LEAF;
+    }
+
+    RRBVec(int size, int shift, Object[] root) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+    }
+
+    public static RRBVec fromArray(Object[] arr) {
+        int n = arr.length;
+        if (n == 0) {
+            return new RRBVec();
+        }
+        int count = ((n - 1) >>> 5) + 1;
+        Object[] nodes = new Object[count];
+        for (int i = 0; i < count; i++) {
+            int len = Math.min(32, n - (i << 5));
+            Object[] leaf = new Object[len];
+            System.arraycopy(arr, i << 5, leaf, 0, len);
+            nodes[i] = leaf;
+        }
+        int level = 0;
+        while (count > 1) {
+            level += 5;
+            int parents = ((count - 1) >>> 5) + 1;
+            for (int i = 0; i < parents; i++) {
+                int len = Math.min(32, count - (i << 5));
+                Object[] children = new Object[len];
+                System.arraycopy(nodes, i << 5, children, 0, len);
+                nodes[i] = makeNode(children, len, level);
+            }
+            count = parents;
+        }
+        return new RRBVec(n, level, (Object[]) nodes[0]);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Object get(int i) {
+        rangeCheck(i);
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= 5) {
+            int[] sizes = (int[]) node[node.length - 1];
+            int subidx = i >>> level;
+            if (sizes == null) {
+                i -= subidx << level;
+            }
+            else {
+                // i >>> level is a lower bound, as no child is larger than a
+                // full one.
+                while (sizes[subidx] <= i) {
+                    subidx++;
+                }
+                if (subidx != 0) {
+                    i -= sizes[subidx - 1];
+                }
+            }
+            node = (Object[]) node[subidx];
+        }
+        return node[i];
+    }
+
+    public RRBVec set(int i, Object val) {
+        rangeCheck(i);
+        return new RRBVec(size, shift, setNode(shift, root, i, val));
+    }
+
+    private static Object[] setNode(int level, Object[] node, int i,
+                                    Object val) {
+        Object[] newNode = node.clone();
+        if (level == 0) {
+            newNode[i] = val;
+            return newNode;
+        }
+        int[] sizes = (int[]) node[node.length - 1];
+        int subidx = i >>> level;
+        if (sizes == null) {
+            i -= subidx << level;
+        }
+        else {
+            while (sizes[subidx] <= i) {
+                subidx++;
+            }
+            if (subidx != 0) {
+                i -= sizes[subidx - 1];
+            }
+        }
+        newNode[subidx] = setNode(level - 5, (Object[]) node[subidx], i, val);
+        return newNode;
+    }
+
+    public RRBVec push(Object val) {
+        if (size == Integer.MAX_VALUE)
+            throw new IllegalStateException("Vector is full");
+        if (size == 0) {
+            return new RRBVec(1, 0, new Object[]{val});
+        }
+        Object[] newRoot = pushNode(shift, root, val);
+        if (newRoot != null) {
+            return new RRBVec(size + 1, shift, newRoot);
+        }
+        // no space left on the rightmost path, so grow the trie
+        Object[] children = new Object[]{root, newPath(shift, val)};
+        return new RRBVec(size + 1, shift + 5, makeNode(children, 2, shift + 5));
+    }
+
+    // Returns null if there's no space left on the rightmost path below node.
+    private static Object[] pushNode(int level, Object[] node, Object val) {
+        if (level == 0) {
+            if (node.length == 32) {
+                return null;
+            }
+            Object[] leaf = Arrays.copyOf(node, node.length + 1);
+            leaf[node.length] = val;
+            return leaf;
+        }
+        int k = node.length - 1;
+        int[] sizes = (int[]) node[k];
+        Object[] last = (Object[]) node[k - 1];
+        Object[] newLast = pushNode(level - 5, last, val);
+        if (newLast != null) {
+            Object[] newNode = node.clone();
+            newNode[k - 1] = newLast;
+            if (sizes != null) {
+                sizes = sizes.clone();
+                sizes[k - 1]++;
+                newNode[k] = sizes;
+            }
+            return newNode;
+        }
+        if (k == 32) {
+            return null;
+        }
+        Object[] newNode = new Object[k + 2];
+        System.arraycopy(node, 0, newNode, 0, k);
+        newNode[k] = newPath(level - 5, val);
+        if (sizes != null) {
+            int[] newSizes = Arrays.copyOf(sizes, k + 1);
+            newSizes[k] = sizes[k - 1] + 1;
+            newNode[k + 1] = newSizes;
+        }
+        else if (treeSize(level - 5, last) != 1 << level) {
+            // the old last child was not full, so the node is no longer
+            // regular
+            return makeNode(newNode, k + 1, level);
+        }
+        return newNode;
+    }
+
+    private static Object[] newPath(int levels, Object val) {
+        Object[] topNode = new Object[]{val};
+        for (int level = levels; level > 0; level -= 5) {
+            topNode = new Object[]{topNode, null};
+        }
+        return topNode;
+    }
+
+    public RRBVec concat(RRBVec other) {
+        if (other.size == 0) {
+            return this;
+        }
+        if (size == 0) {
+            return other;
+        }
+        if (size > Integer.MAX_VALUE - other.size)
+            throw new IllegalArgumentException("Concatenated vector is too large");
+        Object[] merged = concatSubTree(root, shift, other.root, other.shift);
+        int level = Math.max(shift, other.shift);
+        // merged is one level above the taller trie, with one or two children
+        if (merged.length == 2) {
+            return new RRBVec(size + other.size, level, (Object[]) merged[0]);
+        }
+        return new RRBVec(size + other.size, level + 5, merged);
+    }
+
+    // Concatenates the rightmost path of left with the leftmost path of right.
+    // Returns a node one level above the highest of the two, with one or two
+    // children.
+    private static Object[] concatSubTree(Object[] left, int leftLevel,
+                                          Object[] right, int rightLevel) {
+        if (leftLevel > rightLevel) {
+            Object[] centre = concatSubTree(lastChild(left), leftLevel - 5,
+                                            right, rightLevel);
+            return rebalance(left, centre, null, leftLevel);
+        }
+        else if (leftLevel < rightLevel) {
+            Object[] centre = concatSubTree(left, leftLevel,
+                                            (Object[]) right[0], rightLevel - 5);
+            return rebalance(null, centre, right, rightLevel);
+        }
+        else if (leftLevel == 0) {
+            int total = left.length + right.length;
+            if (total <= 32) {
+                Object[] leaf = new Object[total];
+                System.arraycopy(left, 0, leaf, 0, left.length);
+                System.arraycopy(right, 0, leaf, left.length, right.length);
+                return makeNode(new Object[]{leaf}, 1, 5);
+            }
+            return makeNode(new Object[]{left, right}, 2, 5);
+        }
+        else {
+            Object[] centre = concatSubTree(lastChild(left), leftLevel - 5,
+                                            (Object[]) right[0], rightLevel - 5);
+            return rebalance(left, centre, right, leftLevel);
+        }
+    }
+
+    private static Object[] lastChild(Object[] node) {
+        return (Object[]) node[node.length - 2];
+    }
+
+    // Merges the children of left (except the last one), centre and right
+    // (except the first one), all at level - 5, and redistributes their slots
+    // so that we don't end up with more than EXTRAS nodes too many. Returns a
+    // node at level + 5 with one or two children.
+    private static Object[] rebalance(Object[] left, Object[] centre,
+                                      Object[] right, int level) {
+        Object[] all = new Object[96];
+        int n = 0;
+        if (left != null) {
+            int k = left.length - 1;
+            System.arraycopy(left, 0, all, n, k - 1);
+            n += k - 1;
+        }
+        int ck = centre.length - 1;
+        System.arraycopy(centre, 0, all, n, ck);
+        n += ck;
+        if (right != null) {
+            int k = right.length - 1;
+            System.arraycopy(right, 1, all, n, k - 1);
+            n += k - 1;
+        }
+
+        final int childLevel = level - 5;
+        int[] counts = new int[n];
+        int total = 0;
+        for (int i = 0; i < n; i++) {
+            counts[i] = slots(childLevel, (Object[]) all[i]);
+            total += counts[i];
+        }
+        final int optimal = ((total - 1) >>> 5) + 1;
+        int len = n;
+        int i = 0;
+        while (optimal + EXTRAS < len) {
+            // skip over the nodes which are already full
+            while (counts[i] == 32) {
+                i++;
+            }
+            // spread the slots of this short node over the following nodes
+            int remaining = counts[i];
+            do {
+                int min = Math.min(remaining + counts[i + 1], 32);
+                counts[i] = min;
+                remaining = remaining + counts[i + 1] - min;
+                i++;
+            } while (remaining > 0);
+            // the node we emptied is removed from the plan
+            for (int j = i; j < len - 1; j++) {
+                counts[j] = counts[j + 1];
+            }
+            len--;
+            i--;
+        }
+
+        Object[] newAll = executePlan(all, counts, len, childLevel);
+        if (len <= 32) {
+            Object[] node = makeNode(newAll, len, level);
+            return makeNode(new Object[]{node}, 1, level + 5);
+        }
+        Object[] newLeft = makeNode(newAll, 32, level);
+        Object[] rest = new Object[len - 32];
+        System.arraycopy(newAll, 32, rest, 0, len - 32);
+        Object[] newRight = makeNode(rest, len - 32, level);
+        return makeNode(new Object[]{newLeft, newRight}, 2, level + 5);
+    }
+
+    // Copies the slots of the nodes in all into len nodes, sized as
+    // described by counts. Nodes which would be copied as is are reused.
+    private static Object[] executePlan(Object[] all, int[] counts, int len,
+                                        int level) {
+        Object[] result = new Object[len];
+        int src = 0;
+        int offset = 0;
+        for (int j = 0; j < len; j++) {
+            int want = counts[j];
+            Object[] cur = (Object[]) all[src];
+            if (offset == 0 && slots(level, cur) == want) {
+                result[j] = cur;
+                src++;
+                continue;
+            }
+            Object[] buf = new Object[want];
+            int filled = 0;
+            while (filled < want) {
+                cur = (Object[]) all[src];
+                int curSlots = slots(level, cur);
+                int take = Math.min(curSlots - offset, want - filled);
+                System.arraycopy(cur, offset, buf, filled, take);
+                filled += take;
+                offset += take;
+                if (offset == curSlots) {
+                    src++;
+                    offset = 0;
+                }
+            }
+            result[j] = level == 0 ? buf : makeNode(buf, want, level);
+        }
+        return result;
+    }
+
+    private static int slots(int level, Object[] node) {
+        return level == 0 ? node.length : node.length - 1;
+    }
+
+    // Creates an internal node at level from the first count children, and
+    // attaches a size table if it's not regular.
+    private static Object[] makeNode(Object[] children, int count, int level) {
+        Object[] node = new Object[count + 1];
+        System.arraycopy(children, 0, node, 0, count);
+        int[] sizes = new int[count];
+        boolean regular = true;
+        int acc = 0;
+        for (int i = 0; i < count; i++) {
+            int childSize = treeSize(level - 5, (Object[]) children[i]);
+            if (i != count - 1 && childSize != 1 << level) {
+                regular = false;
+            }
+            acc += childSize;
+            sizes[i] = acc;
+        }
+        node[count] = regular ? null : sizes;
+        return node;
+    }
+
+    private static int treeSize(int level, Object[] node) {
+        if (level == 0) {
+            return node.length;
+        }
+        int k = node.length - 1;
+        int[] sizes = (int[]) node[k];
+        if (sizes != null) {
+            return sizes[k - 1];
+        }
+        return ((k - 1) << level) + treeSize(level - 5, (Object[]) node[k - 1]);
+    }
+
+    public RRBVec[] splitAt(int i) {
+        if (i < 0 || i > size)
+            throw new IndexOutOfBoundsException("Index:"+i+", Size:"+size);
+        return new RRBVec[]{take(i), drop(i)};
+    }
+
+    public RRBVec insertAt(int i, Object val) {
+        if (i < 0 || i > size)
+            throw new IndexOutOfBoundsException("Index:"+i+", Size:"+size);
+        if (i == size) {
+            return push(val);
+        }
+        return take(i).push(val).concat(drop(i));
+    }
+
+    // Returns the first n elements.
+    public RRBVec take(int n) {
+        if (n < 0 || n > size)
+            throw new IndexOutOfBoundsException("Index:"+n+", Size:"+size);
+        if (n == size) {
+            return this;
+        }
+        if (n == 0) {
+            return new RRBVec();
+        }
+        return normalised(n, shift, takeNode(shift, root, n));
+    }
+
+    // Returns everything but the first n elements.
+    public RRBVec drop(int n) {
+        if (n < 0 || n > size)
+            throw new IndexOutOfBoundsException("Index:"+n+", Size:"+size);
+        if (n == 0) {
+            return this;
+        }
+        if (n == size) {
+            return new RRBVec();
+        }
+        return normalised(size - n, shift, dropNode(shift, root, n));
+    }
+
+    // Removes internal nodes with a single child from the top of the trie.
+    private static RRBVec normalised(int size, int shift, Object[] root) {
+        while (shift > 0 && root.length == 2) {
+            root = (Object[]) root[0];
+            shift -= 5;
+        }
+        return new RRBVec(size, shift, root);
+    }
+
+    private static Object[] takeNode(int level, Object[] node, int n) {
+        if (level == 0) {
+            return n == node.length ? node : Arrays.copyOf(node, n);
+        }
+        int[] sizes = (int[]) node[node.length - 1];
+        int last = n - 1;
+        int subidx = last >>> level;
+        int before;
+        if (sizes == null) {
+            before = subidx << level;
+        }
+        else {
+            while (sizes[subidx] <= last) {
+                subidx++;
+            }
+            before = subidx == 0 ? 0 : sizes[subidx - 1];
+        }
+        Object[] child = takeNode(level - 5, (Object[]) node[subidx], n - before);
+        Object[] newNode = new Object[subidx + 2];
+        System.arraycopy(node, 0, newNode, 0, subidx);
+        newNode[subidx] = child;
+        if (sizes != null) {
+            int[] newSizes = Arrays.copyOf(sizes, subidx + 1);
+            newSizes[subidx] = n;
+            newNode[subidx + 1] = newSizes;
+        }
+        return newNode;
+    }
+
+    private static Object[] dropNode(int level, Object[] node, int n) {
+        if (n == 0) {
+            return node;
+        }
+        if (level == 0) {
+            return Arrays.copyOfRange(node, n, node.length);
+        }
+        int k = node.length - 1;
+        int[] sizes = (int[]) node[k];
+        int subidx = n >>> level;
+        int before;
+        if (sizes == null) {
+            before = subidx << level;
+        }
+        else {
+            while (sizes[subidx] <= n) {
+                subidx++;
+            }
+            before = subidx == 0 ? 0 : sizes[subidx - 1];
+        }
+        Object[] children = new Object[k - subidx];
+        children[0] = dropNode(level - 5, (Object[]) node[subidx], n - before);
+        System.arraycopy(node, subidx + 1, children, 1, k - subidx - 1);
+        return makeNode(children, k - subidx, level);
+    }
+
+    private void rangeCheck(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index:"+index+", Size:"+size);
+    }
+
+    public Iterator iterator() {
+        return new RRBIter(size, shift, root);
+    }
+
+    // Walks the leaves from left to right, keeping the path down to the
+    // current leaf on a stack.
+    private static final class RRBIter implements Iterator {
+        private final Object[][] nodes;
+        private final int[] pos;
+        private Object[] leaf;
+        private int leafPos;
+        private int remaining;
+
+        RRBIter(int size, int shift, Object[] root) {
+            remaining = size;
+            int depth = shift / 5;
+            nodes = new Object[depth + 1][];
+            pos = new int[depth + 1];
+            nodes[depth] = root;
+            for (int d = depth; d > 0; d--) {
+                nodes[d - 1] = (Object[]) nodes[d][0];
+            }
+            leaf = nodes[0];
+        }
+
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        public Object next() {
+            if (remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            if (leafPos == leaf.length) {
+                // go up until we find a node with a child we haven't visited
+                int d = 1;
+                while (pos[d] + 1 == nodes[d].length - 1) {
+                    d++;
+                }
+                pos[d]++;
+                for (; d > 0; d--) {
+                    nodes[d - 1] = (Object[]) nodes[d][pos[d]];
+                    pos[d - 1] = 0;
+                }
+                leaf = nodes[0];
+                leafPos = 0;
+            }
+            remaining--;
+            return leaf[leafPos++];
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2014 Jean Niklas L'orange. All rights reserved.
+ *
+ * The use and distribution terms for this software are covered by the
+ * Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ * which can be found in the file LICENSE at the root of this distribution.
+ *
+ * By using this software in any fashion, you are agreeing to be bound by
+ * the terms of this license.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.hypirion.pvec;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A PVec which many threads can append to and update at once. Writers do not
+ * race to CAS in their own version, which wastes a path copy for every
+ * failure. Instead they queue their operation, and whichever writer gets the
+ * combiner lock applies all queued operations in a single batch through a
+ * transient and publishes the result. The other writers wait until their
+ * operation is done. This is flat combining, with a queue in place of
+ * per-thread publication records.
+ *
+ * snapshot never waits, and returns the latest published version. The
+ * functions given to update are run by the combiner, and must not use the
+ * SharedPVec themselves.
+ */
+public final class SharedPVec {
+    private volatile PVec current;
+    private final ConcurrentLinkedQueue<Op> pending;
+    private final AtomicBoolean combining;
+    // Only used by the combiner, to keep track of the ops in its batch.
+    private final Op[] batch;
+
+    private static final class Op {
+        final int index; // -1 for appends
+        final Object val;
+        final Fun f;
+        Throwable error;
+        volatile boolean done;
+
+        Op(int index, Object val, Fun f) {
+            this.index = index;
+            this.val = val;
+            this.f = f;
+        }
+    }
+
+    public SharedPVec() {
+        this(new PVec());
+    }
+
+    public SharedPVec(PVec initial) {
+        current = initial;
+        pending = new ConcurrentLinkedQueue<Op>();
+        combining = new AtomicBoolean();
+        batch = new Op[1024];
+    }
+
+    public PVec snapshot() {
+        return current;
+    }
+
+    public void append(Object val) {
+        await(new Op(-1, val, null));
+    }
+
+    public void update(int i, Fun f) {
+        if (i < 0)
+            throw new IndexOutOfBoundsException("Index:"+i);
+        await(new Op(i, null, f));
+    }
+
+    // Queues op and waits until it has been applied, combining whenever no one
+    // else is. The combiner may have drained the queue right before we added
+    // op, so we have to try again after it's done.
+    private void await(Op op) {
+        pending.add(op);
+        while (!op.done) {
+            if (!combining.get() && combining.compareAndSet(false, true)) {
+                try {
+                    combine();
+                }
+                finally {
+                    combining.set(false);
+                }
+            }
+            else {
+                Thread.yield();
+            }
+        }
+        Throwable e = op.error;
+        if (e != null) {
+            if (e instanceof RuntimeException)
+                throw (RuntimeException) e;
+            if (e instanceof Error)
+                throw (Error) e;
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void combine() {
+        Op op = pending.poll();
+        if (op == null) {
+            return;
+        }
+        if (pending.isEmpty()) {
+            // no one to combine with, and a transient costs more than a
+            // single persistent operation.
+            applyOne(op);
+            return;
+        }
+        final Op[] ops = batch;
+        TVec t = current.asConfinedTransient();
+        int count = 0;
+        // ops queued while we combine are part of this batch too, but it's
+        // capped so that the writers in it aren't kept waiting for too long.
+        try {
+            do {
+                ops[count++] = op;
+                // whatever an op throws belongs to its own writer, and must
+                // not stop the rest of the batch.
+                try {
+                    if (op.index < 0) {
+                        t.push(op.val);
+                    }
+                    else {
+                        t.update(op.index, op.f);
+                    }
+                }
+                catch (Throwable e) {
+                    op.error = e;
+                }
+            } while (count < ops.length && (op = pending.poll()) != null);
+        }
+        finally {
+            current = t.asPersistent();
+            // done is set after current, so a writer sees its own operation
+            // in snapshot once it returns.
+            for (int i = 0; i < count; i++) {
+                ops[i].done = true;
+                ops[i] = null;
+            }
+        }
+    }
+
+    private void applyOne(Op op) {
+        try {
+            if (op.index < 0) {
+                current = current.push(op.val);
+            }
+            else {
+                current = current.update(op.index, op.f);
+            }
+        }
+        catch (Throwable e) {
+            op.error = e;
+        }
+        finally {
+            op.done = true;
+        }
+    }
+}
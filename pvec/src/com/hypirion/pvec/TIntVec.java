@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2014 Jean Niklas L'orange. All rights reserved.
+ *
+ * The use and distribution terms for this software are covered by the
+ * Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ * which can be found in the file LICENSE at the root of this distribution.
+ *
+ * By using this software in any fashion, you are agreeing to be bound by
+ * the terms of this license.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.hypirion.pvec;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// TVec with int[] leaves and tail. An int[] cannot hold the id object, so
+// each transient also gets a unique long stamp, which is split over the 33rd
+// and 34th slot of the leaves it owns. Interior nodes are owned through id like in TVec.
+public final class TIntVec {
+    private int size;
+    private int shift;
+    private int[] tail;
+    private Object root;
+    private volatile Object id;
+    private long stamp;
+
+    private static final AtomicLong STAMPS = new AtomicLong();
+
+    public TIntVec() {
+        id = new Object();
+        stamp = STAMPS.incrementAndGet();
+        size = 0;
+        shift = 0;
+        tail = newLeaf(stamp);
+        root = null;
+    }
+
+    TIntVec(int size, int shift, Object root, int[] tail) {
+        id = new Object();
+        stamp = STAMPS.incrementAndGet();
+        this.size = size;
+        this.shift = shift;
+        this.tail = ensureEditable(tail, stamp);
+        this.root = root;
+    }
+
+    public TIntVec set(int i, int val) {
+        editCheck();
+        rangeCheck(i);
+        if (i >= tailOffset()) {
+            tail[i & 31] = val;
+            return this;
+        }
+        if (shift == 0) {
+            int[] leaf = ensureEditable((int[]) root, stamp);
+            leaf[i & 31] = val;
+            root = leaf;
+            return this;
+        }
+        Object[] node = ensureEditable((Object[]) root, id);
+        root = node;
+        for (int level = shift; level > 5; level -= 5) {
+            int subidx = (i >>> level) & 31;
+            Object[] child = ensureEditable((Object[]) node[subidx], id);
+            node[subidx] = child;
+            node = child;
+        }
+        int subidx = (i >>> 5) & 31;
+        int[] leaf = ensureEditable((int[]) node[subidx], stamp);
+        node[subidx] = leaf;
+        leaf[i & 31] = val;
+        return this;
+    }
+
+    public int get(int i) {
+        rangeCheck(i);
+        if (i >= tailOffset()) {
+            return tail[i & 31];
+        }
+        else {
+            Object node = root;
+            for (int level = shift; level > 0; level -= 5) {
+                node = ((Object[]) node)[(i >>> level) & 31];
+            }
+            return ((int[]) node)[i & 31];
+        }
+    }
+
+    public TIntVec push(int val) {
+        editCheck();
+        int ts = tailSize();
+        if (ts != 32) {
+            tail[ts] = val;
+            size++;
+            return this;
+        }
+        else { // have to insert tail into root.
+            int[] newTail = newLeaf(stamp);
+            newTail[0] = val;
+            // Special case: If old size == 32, then tail is new root
+            if (size == 32) {
+                root = tail;
+            }
+            // check if the root is completely filled. Must also increment
+            // shift if that's the case.
+            else if ((size >>> 5) > (1 << shift)) {
+                Object[] newRoot = newNode(id);
+                newRoot[0] = root;
+                newRoot[1] = newPath(shift, tail, id);
+                shift += 5;
+                root = newRoot;
+            }
+            else { // still space in root
+                root = pushLeaf(shift, size-1, (Object[]) root, tail, id);
+            }
+            tail = newTail;
+            size++;
+            return this;
+        }
+    }
+
+    private static Object[] pushLeaf(int shift, int i, Object[] root,
+                                     int[] tail, Object id) {
+        Object[] newRoot = ensureEditable(root, id);
+        Object[] node = newRoot;
+        for (int level = shift; level > 5; level -= 5) {
+            int subidx = (i >>> level) & 31;
+            Object[] child = (Object[]) node[subidx];
+            if (child == null) {
+                node[subidx] = newPath(level - 5, tail, id);
+                return newRoot;
+            }
+            child = ensureEditable(child, id);
+            node[subidx] = child;
+            node = child;
+        }
+        node[(i >>> 5) & 31] = tail;
+        return newRoot;
+    }
+
+    private static Object newPath(int levels, int[] tail, Object id) {
+        Object topNode = tail;
+        for (int level = levels; level > 0; level -= 5) {
+            Object[] newTop = newNode(id);
+            newTop[0] = topNode;
+            topNode = newTop;
+        }
+        return topNode;
+    }
+
+    public TIntVec pop() {
+        editCheck();
+        if (size == 0) {
+            throw new IllegalStateException("Vector is already empty");
+        }
+        if (size == 1) {
+            size = 0;
+            shift = 0;
+            root = null;
+            return this;
+        }
+        if (((size-1) & 31) > 0) {
+            size--;
+            return this;
+        }
+        int newTrieSize = size - 33;
+        // special case: if new size is 32, then the root is the new tail
+        if (newTrieSize == 0) {
+            shift = 0;
+            size = 32;
+            tail = ensureEditable((int[]) root, stamp);
+            root = null;
+            return this;
+        }
+        // check if we can reduce the trie's height
+        if (newTrieSize == 1 << shift) {
+            Object[] oldRoot = (Object[]) root;
+            Object node = oldRoot[1];
+            for (int level = shift - 5; level > 0; level -= 5) {
+                node = ((Object[]) node)[0];
+            }
+            shift -= 5;
+            size--;
+            root = oldRoot[0];
+            tail = ensureEditable((int[]) node, stamp);
+            return this;
+        }
+        // diverges contain information on when the path diverges.
+        int diverges = newTrieSize ^ (newTrieSize - 1);
+        boolean hasDiverged = false;
+        Object[] newRoot = ensureEditable((Object[]) root, id);
+        Object[] node = newRoot;
+        for (int level = shift; level > 5; level -= 5) {
+            int subidx = (newTrieSize >>> level) & 31;
+            Object[] child = (Object[]) node[subidx];
+            if (hasDiverged) {
+                node = child;
+            } else if ((diverges >>> level) != 0) {
+                hasDiverged = true;
+                node[subidx] = null;
+                node = child;
+            } else {
+                child = ensureEditable(child, id);
+                node[subidx] = child;
+                node = child;
+            }
+        }
+        int subidx = (newTrieSize >>> 5) & 31;
+        int[] leaf = (int[]) node[subidx];
+        if (!hasDiverged) {
+            node[subidx] = null;
+        }
+        root = newRoot;
+        tail = ensureEditable(leaf, stamp);
+        size--;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void rangeCheck(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index:"+index+", Size:"+size);
+    }
+
+    private int tailOffset() {
+        return (size - 1) & (~31);
+    }
+
+    private void editCheck() {
+        if (id == null)
+            throw new IllegalStateException("Transient has been converted to persistent.");
+    }
+
+    private int tailSize() {
+        if (size == 0)
+            return 0;
+        else
+            return ((size-1) & 31)+1;
+    }
+
+    public PIntVec asPersistent() {
+        id = null;
+        // no stamp is 0, so leaves shared with the result can't be edited
+        stamp = 0;
+        int ts = tailSize();
+        int[] compressed = new int[ts];
+        System.arraycopy(tail, 0, compressed, 0, ts);
+        return new PIntVec(size, shift, root, compressed);
+    }
+
+    private static Object[] newNode(Object id) {
+        Object[] node = new Object[33];
+        node[32] = id;
+        return node;
+    }
+
+    private static Object[] ensureEditable(Object[] node, Object id) {
+        if (node.length == 33 && node[32] == id) {
+            return node;
+        }
+        else {
+            Object[] editable = new Object[33];
+            // this arraycopy assumes nodes cannot be more than 33 elts long
+            System.arraycopy(node, 0, editable, 0, node.length);
+            editable[32] = id;
+            return editable;
+        }
+    }
+
+    private static int[] newLeaf(long stamp) {
+        int[] leaf = new int[34];
+        leaf[32] = (int) (stamp >>> 32);
+        leaf[33] = (int) stamp;
+        return leaf;
+    }
+
+    private static int[] ensureEditable(int[] leaf, long stamp) {
+        if (leaf.length == 34 && leaf[32] == (int) (stamp >>> 32)
+            && leaf[33] == (int) stamp) {
+            return leaf;
+        }
+        else {
+            int[] editable = new int[34];
+            System.arraycopy(leaf, 0, editable, 0, Math.min(leaf.length, 32));
+            editable[32] = (int) (stamp >>> 32);
+            editable[33] = (int) stamp;
+            return editable;
+        }
+    }
+}
@@ -23,31 +23,71 @@ package com.hypirion.pvec;
    - Instead of returning a new vector like PVec, it always returns itself.
 */
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
 
 public final class TVec implements Iterable {
+    // see PVec for how size and offset relate.
     private int size;
+    private int offset;
     private int shift;
     private Object[] tail;
     private Object[] root;
+    // Nodes we own, and can therefore edit in place, have the id in their
+    // 33rd slot. asPersistent copies them into plain 32-element nodes.
     private volatile Object id;
 
+    // Set for thread-confined transients, which keep their id in the plain
+    // field confinedId instead. Reading it is not a volatile read, so the JIT
+    // is free to keep it in a register. Whether the transient is used by its
+    // owner is only checked in asPersistent.
+    private final Thread owner;
+    private Object confinedId;
+
+    private static final Object[] EMPTY_TAIL = new Object[0];
+
+    // The last leaf set or update wrote to, and the index of its first
+    // element. editPath[k] is its ancestor at level 5*(k+1). All of them are
+    // owned by us, so writes into the same leaf or subtree can skip the walk
+    // and the ownership checks from the top. Anything changing the shape of
+    // the trie must reset editFocus to -1.
+    private Object[] editLeaf;
+    private Object[][] editPath;
+    private int editFocus = -1;
+
     public TVec() {
-        id = new Object();
-        size = 0;
-        shift = 0;
-        tail = newNode(id);
-        root = null;
+        this(0, 0, 0, null, EMPTY_TAIL, false);
+    }
+
+    // Returns an empty transient which only the calling thread may use.
+    public static TVec confined() {
+        return new TVec(0, 0, 0, null, EMPTY_TAIL, true);
     }
 
-    TVec(int size, int shift, Object[] root, Object[] tail) {
-        id = new Object();
+    TVec(int size, int offset, int shift, Object[] root, Object[] tail,
+         boolean confined) {
+        Object newId = new Object();
+        if (confined) {
+            owner = Thread.currentThread();
+            confinedId = newId;
+        } else {
+            owner = null;
+            id = newId;
+        }
         this.size = size;
+        this.offset = offset;
         this.shift = shift;
-        this.tail = expandNode(tail, id);
+        this.tail = expandNode(tail, newId);
         this.root = root;
     }
 
+    // Every method which edits nodes reads the id once through this, and
+    // passes it along from there.
+    private Object editId() {
+        return owner == null ? id : confinedId;
+    }
+
     private static Object[] expandNode(Object[] node, Object id) {
         Object[] expanded = new Object[33];
         System.arraycopy(node, 0, expanded, 0, node.length);
@@ -56,28 +96,82 @@ public final class TVec implements Iterable {
     }
 
     public TVec set(int i, Object val) {
+        editCheck();
         rangeCheck(i);
+        i += offset;
         if (i >= tailOffset()) {
             tail[i & 31] = val;
             return this;
         }
         else {
+            editableLeafFor(i)[i & 31] = val;
+            return this;
+        }
+    }
+
+    public TVec update(int i, Fun f) {
+        editCheck();
+        rangeCheck(i);
+        i += offset;
+        if (i >= tailOffset()) {
+            tail[i & 31] = f.update(tail[i & 31]);
+            return this;
+        }
+        else {
+            Object[] leaf = editableLeafFor(i);
+            leaf[i & 31] = f.update(leaf[i & 31]);
+            return this;
+        }
+    }
+
+    // Returns the leaf containing i, which must be in the trie, after making
+    // sure we own it and all its ancestors. Only walks down from the lowest
+    // ancestor it shares with the previous leaf we wrote to.
+    private Object[] editableLeafFor(int i) {
+        if ((i & ~31) == editFocus) {
+            return editLeaf;
+        }
+        final Object id = editId();
+        if (shift == 0) { // root is the only leaf
             root = ensureEditable(root, id);
-            Object[] node = root;
-            for (int level = shift; level > 0; level -= 5) {
-                int subidx = (i >>> level) & 31;
-                Object[] child = (Object[]) node[subidx];
-                child = ensureEditable(child, id);
-                node[subidx] = child;
-                node = child;
+            editLeaf = root;
+            editFocus = 0;
+            return root;
+        }
+        if (editPath == null) {
+            editPath = new Object[6][];
+        }
+        int level = shift;
+        if (editFocus >= 0) {
+            int diff = i ^ editFocus;
+            level = 5;
+            while ((diff >>> (level + 5)) != 0) {
+                level += 5;
             }
-            node[i & 31] = val;
-            return this;
         }
+        if (level == shift) {
+            root = ensureEditable(root, id);
+            editPath[level/5 - 1] = root;
+        }
+        Object[] node = editPath[level/5 - 1];
+        for (; level > 0; level -= 5) {
+            int subidx = (i >>> level) & 31;
+            Object[] child = (Object[]) node[subidx];
+            child = ensureEditable(child, id);
+            node[subidx] = child;
+            if (level > 5) {
+                editPath[level/5 - 2] = child;
+            }
+            node = child;
+        }
+        editLeaf = node;
+        editFocus = i & ~31;
+        return node;
     }
 
     public Object get(int i) {
         rangeCheck(i);
+        i += offset;
         if (i >= tailOffset()) {
             return tail[i & 31];
         }
@@ -91,6 +185,7 @@ public final class TVec implements Iterable {
     }
 
     public TVec push(Object val) {
+        editCheck();
         int ts = tailSize();
         if (ts != 32) {
             tail[ts] = val;
@@ -98,34 +193,68 @@ public final class TVec implements Iterable {
             return this;
         }
         else { // have to insert tail into root.
-            Object[] newTail = newNode(id);
+            Object[] newTail = newNode(editId());
             newTail[0] = val;
-            // Special case: If old size == 32, then tail is new root
-            if (size == 32) {
-                size++;
-                root = tail;
-                tail = newTail;
-                return this;
-            }
-            // check if the root is completely filled. Must also increment
-            // shift if that's the case.
-            if ((size >>> 5) > (1 << shift)) {
-                Object[] newRoot = newNode(id);
-                newRoot[0] = root;
-                newRoot[1] = newPath(shift, tail, id);
-                shift += 5;
-                size++;
-                root = newRoot;
-                tail = newTail;
-                return this;
-            }
-            else { // still space in root
-                root = pushLeaf(shift, size-1, root, tail, id);
-                tail = newTail;
-                size++;
-                return this;
+            pushTail(newTail);
+            size++;
+            return this;
+        }
+    }
+
+    public TVec pushAll(Object[] src, int from, int to) {
+        editCheck();
+        if (from < 0 || to > src.length || from > to)
+            throw new IndexOutOfBoundsException("From:"+from+", To:"+to+
+                                                ", Length:"+src.length);
+        final Object id = editId();
+        while (from < to) {
+            int ts = tailSize();
+            if (ts == 32) {
+                pushTail(newNode(id));
+                ts = 0;
             }
+            // fill as much of the tail as we can in one go
+            int n = Math.min(32 - ts, to - from);
+            System.arraycopy(src, from, tail, ts, n);
+            size += n;
+            from += n;
         }
+        return this;
+    }
+
+    public TVec pushAll(Iterable iterable) {
+        if (iterable instanceof Collection) {
+            Object[] arr = ((Collection) iterable).toArray();
+            return pushAll(arr, 0, arr.length);
+        }
+        for (Object o : iterable) {
+            push(o);
+        }
+        return this;
+    }
+
+    // Inserts the full tail into the trie and replaces it with newTail. Does
+    // not change size, that's up to the caller.
+    private void pushTail(Object[] newTail) {
+        editFocus = -1;
+        final Object id = editId();
+        // Special case: If old size == 32, then tail is new root
+        if (size == 32) {
+            root = tail;
+        }
+        // check if the root is completely filled. Must also increment
+        // shift if that's the case.
+        else if ((size >>> 5) > (1 << shift)) {
+            Object[] newRoot = newNode(id);
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail, id);
+            shift += 5;
+            root = newRoot;
+        }
+        else { // still space in root
+            root = pushLeaf(shift, size-1, root, tail, id);
+        }
+        tail = newTail;
     }
 
     private static Object[] pushLeaf(int shift, int i, Object[] root,
@@ -162,25 +291,43 @@ public final class TVec implements Iterable {
     }
 
     public TVec pop() {
-        if (size == 0) {
+        editCheck();
+        if (size == offset) {
             throw new IllegalStateException("Vector is already empty");
         }
-        if (size == 1) {
+        if (size - offset == 1) {
+            editFocus = -1;
+            tail[(size-1) & 31] = null;
             size = 0;
+            offset = 0;
+            shift = 0;
+            // the trie is empty, so let the old root be garbage collected
+            root = null;
             return this;
         }
         if (((size-1) & 31) > 0) {
+            // don't keep references to popped elements around.
+            tail[(size-1) & 31] = null;
             size--;
             return this;
         }
         else { // has to find new tail
+            editFocus = -1;
+            final Object id = editId();
             int newTrieSize = size - 33;
+            // if only hidden elements are left in the trie, move the visible
+            // ones to the front of the tail and drop the trie.
+            if (offset != 0 && offset >= newTrieSize) {
+                compactInto(newTrieSize, size - 1);
+                return this;
+            }
             // special case: if new size is 32, then new root turns is null, old
             // root the tail
             if (newTrieSize == 0) {
                 shift = 0;
                 size = 32;
-                tail = root;
+                // the tail is written to in place, so we must own it.
+                tail = ensureEditable(root, id);
                 root = null;
                 return this;
             }
@@ -196,7 +343,7 @@ public final class TVec implements Iterable {
                 }
                 size--;
                 root = newRoot;
-                tail = node;
+                tail = ensureEditable(node, id);
                 return this;
             } else { // height is same
                 // diverges contain information on when the path diverges.
@@ -220,28 +367,158 @@ public final class TVec implements Iterable {
                     }
                 }
                 root = newRoot;
-                tail = node;
+                tail = ensureEditable(node, id);
                 size--;
                 return this;
             }
         }
     }
 
+    public TVec popN(int n) {
+        if (n > size - offset)
+            throw new IllegalStateException("Cannot pop "+n+" elements, Size:"+
+                                            (size - offset));
+        return truncate(size - offset - n);
+    }
+
+    public TVec truncate(int newSize) {
+        editCheck();
+        if (newSize < 0 || newSize > size - offset)
+            throw new IndexOutOfBoundsException("New size:"+newSize+", Size:"+
+                                                (size - offset));
+        editFocus = -1;
+        if (newSize == 0) {
+            Arrays.fill(tail, 0, tailSize(), null);
+            size = 0;
+            offset = 0;
+            shift = 0;
+            root = null;
+            return this;
+        }
+        final int newEnd = newSize + offset;
+        final int newTailOffset = (newEnd - 1) & (~31);
+        if (newTailOffset == tailOffset()) { // new tail is the current one
+            Arrays.fill(tail, newEnd - newTailOffset, tailSize(), null);
+            size = newEnd;
+            return this;
+        }
+        if (offset != 0 && offset >= newTailOffset) {
+            compactInto(newTailOffset, newEnd);
+            return this;
+        }
+        // The leaf is cut out of the trie below, so if we own it already, we
+        // can use it as the tail directly.
+        final Object id = editId();
+        tail = ensureEditable(arrayFor(newTailOffset), id);
+        Arrays.fill(tail, newEnd - newTailOffset, 32, null);
+        size = newEnd;
+        if (newTailOffset == 0) {
+            shift = 0;
+            root = null;
+            return this;
+        }
+        int newShift = 0;
+        while ((newTailOffset >>> 5) > (1 << newShift)) {
+            newShift += 5;
+        }
+        Object[] node = root;
+        for (int level = shift; level > newShift; level -= 5) {
+            node = (Object[]) node[0];
+        }
+        shift = newShift;
+        root = truncateNode(newShift, node, newTailOffset - 1, id);
+        return this;
+    }
+
+    private static Object[] truncateNode(int level, Object[] node, int last,
+                                         Object id) {
+        if (((last + 1) & ((32 << level) - 1)) == 0) {
+            return node;
+        }
+        int subidx = (last >>> level) & 31;
+        Object[] editable = ensureEditable(node, id);
+        editable[subidx] = truncateNode(level - 5, (Object[]) editable[subidx],
+                                        last, id);
+        for (int i = subidx + 1; i < 32; i++) {
+            editable[i] = null;
+        }
+        return editable;
+    }
+
+    // Replaces the whole vector with the visible elements in the leaf starting
+    // at leafOffset, up to end. They are moved to the front of a new tail.
+    private void compactInto(int leafOffset, int end) {
+        Object[] leaf = arrayFor(leafOffset);
+        Object[] newTail = newNode(editId());
+        System.arraycopy(leaf, offset - leafOffset, newTail, 0, end - offset);
+        tail = newTail;
+        size = end - offset;
+        offset = 0;
+        shift = 0;
+        root = null;
+    }
+
+    private Object[] arrayFor(int i) {
+        if (i >= tailOffset()) {
+            return tail;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= 5) {
+            node = (Object[]) node[(i >>> level) & 31];
+        }
+        return node;
+    }
+
     public int size() {
-        return size;
+        return size - offset;
     }
 
     public TVec map(Fun f) {
-        return null;
+        editCheck();
+        editFocus = -1;
+        if (size > 32) {
+            root = mapNode(shift, root, offset, f, editId());
+        }
+        // the tail is always owned by us, so it can be updated in place.
+        int ts = tailSize();
+        for (int i = 0; i < ts; i++) {
+            tail[i] = f.update(tail[i]);
+        }
+        return this;
+    }
+
+    // Nodes we already own are rewritten in place, so mapping over a trie the
+    // transient built itself allocates nothing.
+    private static Object[] mapNode(int level, Object[] node, int from, Fun f,
+                                    Object id) {
+        Object[] editable = ensureEditable(node, id);
+        if (level == 0) { // leaves in the trie are always full
+            for (int i = from & 31; i < 32; i++) {
+                editable[i] = f.update(editable[i]);
+            }
+        }
+        else {
+            int start = (from >>> level) & 31;
+            for (int i = start; i < 32; i++) {
+                Object[] child = (Object[]) editable[i];
+                if (child == null) {
+                    break;
+                }
+                editable[i] = mapNode(level - 5, child, i == start ? from : 0,
+                                      f, id);
+            }
+        }
+        return editable;
     }
 
     private void rangeCheck(int index) {
-        if (index >= size)
-            throw new IndexOutOfBoundsException("Index:"+index+", Size:"+size);
+        if (index < 0 || index >= size - offset)
+            throw new IndexOutOfBoundsException("Index:"+index+", Size:"+
+                                                (size - offset));
     }
 
     private void editCheck() {
-        if (id == null)
+        if (editId() == null)
             throw new IllegalStateException("Transient has been converted to persistent.");
     }
 
@@ -257,8 +534,42 @@ public final class TVec implements Iterable {
     }
 
     public PVec asPersistent() {
-        id = null;
-        return new PVec(size, shift, root, compressedTail());
+        if (owner != null && owner != Thread.currentThread())
+            throw new IllegalStateException("Transient used by non-owner thread");
+        final Object id = editId();
+        editFocus = -1;
+        if (id != null) { // not persisted already
+            if (root != null) {
+                root = compactNode(shift, root, id);
+            }
+            tail = compressedTail();
+        }
+        this.id = null;
+        confinedId = null;
+        return new PVec(size, offset, shift, root, tail);
+    }
+
+    // Copies the nodes we own into 32-element nodes without the id. The ones
+    // we don't own are shared as is: They only have nodes we don't own below
+    // them, so the walk stops there, and only visits the nodes we made.
+    private static Object[] compactNode(int level, Object[] node, Object id) {
+        if (node.length != 33 || node[32] != id) {
+            return node;
+        }
+        Object[] compact = new Object[32];
+        if (level == 0) {
+            System.arraycopy(node, 0, compact, 0, 32);
+        }
+        else {
+            // children hidden by an offset are null, so check all of them
+            for (int i = 0; i < 32; i++) {
+                Object[] child = (Object[]) node[i];
+                if (child != null) {
+                    compact[i] = compactNode(level - 5, child, id);
+                }
+            }
+        }
+        return compact;
     }
 
     private Object[] compressedTail() {
@@ -290,6 +601,6 @@ public final class TVec implements Iterable {
     // Use iteration with CARE: The iterator is fully usable even if the
     // transient is updated.
     public Iterator iterator() {
-        return new VecIter(size, shift, root, tail);
+        return new VecIter(size, shift, root, tail, offset);
     }
 }
@@ -50,22 +50,45 @@ public final class TVecUnsafe {
     private Object[] root;
     private volatile Object id;
 
+    // see TVec
+    private final Thread owner;
+    private Object confinedId;
+
+    private static final Object[] EMPTY_TAIL = new Object[0];
+
+    // see TVec
+    private Object[] editLeaf;
+    private Object[][] editPath;
+    private int editFocus = -1;
+
     public TVecUnsafe() {
-        id = new Object();
-        size = 0;
-        shift = 0;
-        tail = newNode(id);
-        root = null;
+        this(0, 0, null, EMPTY_TAIL, false);
+    }
+
+    public static TVecUnsafe confined() {
+        return new TVecUnsafe(0, 0, null, EMPTY_TAIL, true);
     }
 
-    TVecUnsafe(int size, int shift, Object[] root, Object[] tail) {
-        id = new Object();
+    TVecUnsafe(int size, int shift, Object[] root, Object[] tail,
+               boolean confined) {
+        Object newId = new Object();
+        if (confined) {
+            owner = Thread.currentThread();
+            confinedId = newId;
+        } else {
+            owner = null;
+        }
+        id = newId;
         this.size = size;
         this.shift = shift;
-        this.tail = expandNode(tail, id);
+        this.tail = expandNode(tail, newId);
         this.root = root;
     }
 
+    private Object editId() {
+        return owner == null ? id : confinedId;
+    }
+
     private static Object[] expandNode(Object[] node, Object id) {
         Object[] expanded = new Object[33];
         System.arraycopy(node, 0, expanded, 0, node.length);
@@ -80,18 +103,51 @@ public final class TVecUnsafe {
             return this;
         }
         else {
+            arrSet(editableLeafFor(i), i & 31, val);
+            return this;
+        }
+    }
+
+    private Object[] editableLeafFor(int i) {
+        if ((i & ~31) == editFocus) {
+            return editLeaf;
+        }
+        final Object id = editId();
+        if (shift == 0) { // root is the only leaf
             root = ensureEditable(root, id);
-            Object[] node = root;
-            for (int level = shift; level > 0; level -= 5) {
-                int subidx = (i >>> level) & 31;
-                Object[] child = (Object[]) arrGet(node, subidx);
-                child = ensureEditable(child, id);
-                arrSet(node, subidx, child);
-                node = child;
+            editLeaf = root;
+            editFocus = 0;
+            return root;
+        }
+        if (editPath == null) {
+            editPath = new Object[6][];
+        }
+        int level = shift;
+        if (editFocus >= 0) {
+            int diff = i ^ editFocus;
+            level = 5;
+            while ((diff >>> (level + 5)) != 0) {
+                level += 5;
             }
-            arrSet(node, i & 31, val);
-            return this;
         }
+        if (level == shift) {
+            root = ensureEditable(root, id);
+            editPath[level/5 - 1] = root;
+        }
+        Object[] node = editPath[level/5 - 1];
+        for (; level > 0; level -= 5) {
+            int subidx = (i >>> level) & 31;
+            Object[] child = (Object[]) arrGet(node, subidx);
+            child = ensureEditable(child, id);
+            arrSet(node, subidx, child);
+            if (level > 5) {
+                editPath[level/5 - 2] = child;
+            }
+            node = child;
+        }
+        editLeaf = node;
+        editFocus = i & ~31;
+        return node;
     }
 
     public Object get(int i) {
@@ -116,6 +172,8 @@ public final class TVecUnsafe {
             return this;
         }
         else { // have to insert tail into root.
+            editFocus = -1;
+            final Object id = editId();
             Object[] newTail = newNode(id);
             arrSet(newTail, 0, val);
             // Special case: If old size == 32, then tail is new root
@@ -184,7 +242,11 @@ public final class TVecUnsafe {
             throw new IllegalStateException("Vector is already empty");
         }
         if (size == 1) {
+            editFocus = -1;
             size = 0;
+            shift = 0;
+            // the trie is empty, so let the old root be garbage collected
+            root = null;
             return this;
         }
         if (((size-1) & 31) > 0) {
@@ -192,13 +254,15 @@ public final class TVecUnsafe {
             return this;
         }
         else { // has to find new tail
+            editFocus = -1;
+            final Object id = editId();
             int newTrieSize = size - 33;
             // special case: if new size is 32, then new root turns is null, old
             // root the tail
             if (newTrieSize == 0) {
                 shift = 0;
                 size = 32;
-                tail = root;
+                tail = ensureEditable(root, id);
                 root = null;
                 return this;
             }
@@ -214,7 +278,7 @@ public final class TVecUnsafe {
                 }
                 size--;
                 root = newRoot;
-                tail = node;
+                tail = ensureEditable(node, id);
                 return this;
             } else { // height is same
                 // diverges contain information on when the path diverges.
@@ -238,7 +302,7 @@ public final class TVecUnsafe {
                     }
                 }
                 root = newRoot;
-                tail = node;
+                tail = ensureEditable(node, id);
                 size--;
                 return this;
             }
@@ -250,7 +314,35 @@ public final class TVecUnsafe {
     }
 
     public TVecUnsafe map(Fun f) {
-        return null;
+        editFocus = -1;
+        if (size > 32) {
+            root = mapNode(shift, root, f, editId());
+        }
+        int ts = tailSize();
+        for (int i = 0; i < ts; i++) {
+            arrSet(tail, i, f.update(arrGet(tail, i)));
+        }
+        return this;
+    }
+
+    private static Object[] mapNode(int level, Object[] node, Fun f,
+                                    Object id) {
+        Object[] editable = ensureEditable(node, id);
+        if (level == 0) {
+            for (int i = 0; i < 32; i++) {
+                arrSet(editable, i, f.update(arrGet(editable, i)));
+            }
+        }
+        else {
+            for (int i = 0; i < 32; i++) {
+                Object[] child = (Object[]) arrGet(editable, i);
+                if (child == null) {
+                    break;
+                }
+                arrSet(editable, i, mapNode(level - 5, child, f, id));
+            }
+        }
+        return editable;
     }
 
     private void rangeCheck(int index) {
@@ -275,7 +367,11 @@ public final class TVecUnsafe {
     }
 
     public PVecUnsafe asPersistent() {
+        if (owner != null && owner != Thread.currentThread())
+            throw new IllegalStateException("Transient used by non-owner thread");
         id = null;
+        confinedId = null;
+        editFocus = -1;
         return new PVecUnsafe(size, shift, root, compressedTail());
     }
 
@@ -23,25 +23,26 @@ class VecIter implements Iterator {
     private int index;
     private int jump;
 
-    VecIter(int size, int shift, Object[] root, Object[] tail) {
-        index = 0;
+    // Starts iterating at index, which need not be at the start of a leaf.
+    VecIter(int size, int shift, Object[] root, Object[] tail, int index) {
+        this.index = index;
         this.size = size;
         this.tail = tail;
-        jump = 32;
+        jump = (index | 31) + 1;
         // top is at the end, and rank 2 nodes are at the front
         stack = new Object[shift/5][];
-        if (size <= 32) {
+        if (index >= ((size - 1) & (~31))) {
             leaf = tail;
         }
-        else if (size <= 64) {
+        else if (shift == 0) {
             leaf = root;
         }
         else {
             stack[stack.length-1] = root;
             for (int i = stack.length-2; i >= 0; i--) {
-                stack[i] = (Object[]) stack[i+1][0];
+                stack[i] = (Object[]) stack[i+1][(index >>> (5*(i+2))) & 31];
             }
-            leaf = (Object[])stack[0][0];
+            leaf = (Object[])stack[0][(index >>> 5) & 31];
         }
     }
 
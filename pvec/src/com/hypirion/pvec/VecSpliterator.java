@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2014 Jean Niklas L'orange. All rights reserved.
+ *
+ * The use and distribution terms for this software are covered by the
+ * Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ * which can be found in the file LICENSE at the root of this distribution.
+ *
+ * By using this software in any fashion, you are agreeing to be bound by
+ * the terms of this license.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.hypirion.pvec;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+class VecSpliterator implements Spliterator<Object> {
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+    private final int tailOffset;
+    private int index;
+    private final int end;
+    private Object[] leaf;
+
+    VecSpliterator(int shift, Object[] root, Object[] tail, int tailOffset,
+                   int index, int end) {
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+        this.tailOffset = tailOffset;
+        this.index = index;
+        this.end = end;
+    }
+
+    private Object[] leafFor(int i) {
+        if (i >= tailOffset) {
+            return tail;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= 5) {
+            node = (Object[]) node[(i >>> level) & 31];
+        }
+        return node;
+    }
+
+    public boolean tryAdvance(Consumer<? super Object> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        if (index >= end) {
+            return false;
+        }
+        if (leaf == null || (index & 31) == 0) {
+            leaf = leafFor(index);
+        }
+        action.accept(leaf[index & 31]);
+        index++;
+        return true;
+    }
+
+    public void forEachRemaining(Consumer<? super Object> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        int i = index;
+        index = end;
+        while (i < end) {
+            Object[] node = leafFor(i);
+            int leafLeft = 32 - (i & 31);
+            int stop = end - i > leafLeft ? i + leafLeft : end;
+            for (; i < stop; i++) {
+                action.accept(node[i & 31]);
+            }
+        }
+    }
+
+    // Splits at a child boundary of the lowest node that contains the whole
+    // range, so that both halves are made out of whole subtrees (except at the
+    // edges).
+    public Spliterator<Object> trySplit() {
+        final int lo = index;
+        final int hi = end;
+        if (lo >= hi) {
+            return null;
+        }
+        int diverges = lo ^ (hi - 1);
+        if ((diverges >>> 5) == 0) { // within a single leaf
+            return null;
+        }
+        int level = ((31 - Integer.numberOfLeadingZeros(diverges)) / 5) * 5;
+        int mid = (((lo >>> level) + ((hi - 1) >>> level) + 1) >>> 1) << level;
+        index = mid;
+        leaf = null;
+        return new VecSpliterator(shift, root, tail, tailOffset, lo, mid);
+    }
+
+    public long estimateSize() {
+        return end - index;
+    }
+
+    public int characteristics() {
+        return SIZED | SUBSIZED | ORDERED | IMMUTABLE;
+    }
+}
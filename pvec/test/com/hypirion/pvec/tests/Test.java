@@ -19,6 +19,12 @@ import com.hypirion.pvec.PVec;
 import com.hypirion.pvec.PVecUnsafe;
 import com.hypirion.pvec.TVecUnsafe;
 import com.hypirion.pvec.TVec;
+import com.hypirion.pvec.TLongVec;
+import com.hypirion.pvec.PLongVec;
+import com.hypirion.pvec.TIntVec;
+import com.hypirion.pvec.PIntVec;
+import com.hypirion.pvec.TDoubleVec;
+import com.hypirion.pvec.PDoubleVec;
 import java.util.ArrayList;
 import clojure.lang.PersistentVector;
 import clojure.lang.ITransientVector;
@@ -28,6 +34,7 @@ public class Test {
     static final int RUNS = 100;
 
     public static void main(String[] args) {
+        persistedTransients();
         double[] times = new double[7];
         for (int i = 0; i < WARMUP; i++) {
             pushThenPop(times);
@@ -45,6 +52,45 @@ public class Test {
         System.out.println("TransientVector: " + times[4]/RUNS);
     }
 
+    // Transients must reject writes after asPersistent, as those would
+    // otherwise go into leaves shared with the persistent vector.
+    public static void persistedTransients() {
+        TLongVec tl = new TLongVec();
+        TIntVec ti = new TIntVec();
+        TDoubleVec td = new TDoubleVec();
+        for (int i = 0; i < 100; i++) {
+            tl.push(i);
+            ti.push(i);
+            td.push(i);
+        }
+        PLongVec pl = tl.asPersistent();
+        PIntVec pi = ti.asPersistent();
+        PDoubleVec pd = td.asPersistent();
+        try {
+            tl.set(5, 999);
+            System.err.println("TLongVec.set after asPersistent didn't throw");
+            System.exit(1);
+        }
+        catch (IllegalStateException e) {}
+        try {
+            ti.set(5, 999);
+            System.err.println("TIntVec.set after asPersistent didn't throw");
+            System.exit(1);
+        }
+        catch (IllegalStateException e) {}
+        try {
+            td.set(5, 999);
+            System.err.println("TDoubleVec.set after asPersistent didn't throw");
+            System.exit(1);
+        }
+        catch (IllegalStateException e) {}
+        if (pl.get(5) != 5 || pi.get(5) != 5 || pd.get(5) != 5) {
+            System.err.printf("persisted vectors were changed: %d, %d, %f\n",
+                              pl.get(5), pi.get(5), pd.get(5));
+            System.exit(1);
+        }
+    }
+
     public static void pushThenPop(double[] times) {
         long start_time, end_time;
         double difference;